@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.example"
@@ -14,6 +15,29 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter")
 }
 
+// The vectorized scanner (Lexer.Option.VECTORIZE) uses the incubating Vector
+// API, which falls back to scalar scanning when the module is not added.
+val vectorModule = listOf("--add-modules", "jdk.incubator.vector")
+
+tasks.withType<JavaCompile> {
+    options.compilerArgs.addAll(vectorModule)
+}
+
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+    jvmArgs(vectorModule)
+}
+
+tasks.register<JavaExec>("lexerBenchmark") {
+    description = "Compares the table-driven and pattern-based lexers."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass.set("plc.project.LexerBenchmark")
+    jvmArgs(vectorModule)
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    jvmArgsAppend.addAll(vectorModule)
+}
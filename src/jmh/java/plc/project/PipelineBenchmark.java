@@ -0,0 +1,82 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each phase of the compiler separately on generated programs (see
+ * {@link Programs}). Every phase starts from the output of the previous ones,
+ * which is prepared once per trial. Run with {@code ./gradlew jmh}; the build
+ * enables the {@code gc} profiler, which reports {@code gc.alloc.rate.norm}
+ * (bytes allocated per operation) next to the throughput.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xss16m")
+public class PipelineBenchmark {
+
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private String source;
+    private List<Token> tokens;
+    private Ast.Source ast;
+
+    @Setup
+    public void setup() {
+        source = Programs.generate(size);
+        tokens = new Lexer(source).lex();
+        ast = new Parser(tokens).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+    }
+
+    @Benchmark
+    public List<Token> lex() {
+        return new Lexer(source).lex();
+    }
+
+    @Benchmark
+    public Ast.Source parse() {
+        return new Parser(tokens).parseSource();
+    }
+
+    /**
+     * Analyzes the already analyzed tree again, which sets the same variables,
+     * functions and types on it.
+     */
+    @Benchmark
+    public Analyzer analyze() {
+        Analyzer analyzer = new Analyzer(new Scope(null));
+        analyzer.visit(ast);
+        return analyzer;
+    }
+
+    @Benchmark
+    public Environment.PlcObject interpret() {
+        return new Interpreter(new Scope(null)).visit(ast);
+    }
+
+    @Benchmark
+    public Generator generate() {
+        Generator generator = new Generator(new PrintWriter(Writer.nullWriter()));
+        generator.visit(ast);
+        return generator;
+    }
+
+}
@@ -0,0 +1,77 @@
+package plc.project;
+
+/**
+ * Generates programs for the benchmarks which pass the {@link Analyzer} and
+ * run to completion in the {@link Interpreter}, so every phase of the
+ * pipeline can be measured on the same input.
+ */
+final class Programs {
+
+    private Programs() {}
+
+    /**
+     * Returns the program for a benchmark size: {@code small}, {@code medium}
+     * or {@code huge}.
+     */
+    static String generate(String size) {
+        switch (size) {
+            case "small":
+                return generate(10);
+            case "medium":
+                return generate(1_000);
+            case "huge":
+                return generate(20_000);
+            default:
+                throw new IllegalArgumentException("Unknown program size: " + size);
+        }
+    }
+
+    /**
+     * Generates a program with the given number of functions, each exercising
+     * loops, conditionals and every literal type, and a main function which
+     * calls each of them once. Functions are only called once since the
+     * interpreter reuses the scope of a function between calls.
+     */
+    static String generate(int functions) {
+        StringBuilder builder = new StringBuilder(functions * 512);
+        builder.append("VAR seed: Integer = 7;\n")
+                .append("VAL scale: Decimal = 1.5;\n")
+                .append("VAR label: String = \"run\";\n");
+        for (int i = 0; i < functions; i++) {
+            builder.append("FUN step").append(i).append("(x: Integer): Integer DO\n")
+                    .append("    LET total = x;\n")
+                    .append("    LET i = 0;\n")
+                    .append("    LET name = label + \"-\\t\" + x;\n")
+                    .append("    LET ratio = scale * 2.25;\n")
+                    .append("    LET letter = 'c';\n")
+                    .append("    WHILE i < ").append(i % 8 + 4).append(" DO\n")
+                    .append("        total = total + i * 3 - 1;\n")
+                    .append("        i = i + 1;\n")
+                    .append("    END\n")
+                    .append("    IF total > 20 && total != ").append(i).append(" DO\n")
+                    .append("        total = total / 2;\n")
+                    .append("    ELSE\n")
+                    .append("        total = total + seed;\n")
+                    .append("    END\n")
+                    .append("    RETURN total;\n")
+                    .append("END\n");
+        }
+        builder.append("FUN main(): Integer DO\n")
+                .append("    LET sum = 0;\n");
+        for (int i = 0; i < functions; i++) {
+            builder.append("    sum = sum + step").append(i).append("(").append(i % 100).append(");\n");
+        }
+        // The generator leaves the indentation of the rest of a function
+        // shifted after a switch, so there is only one, at the very end.
+        builder.append("    SWITCH sum\n")
+                .append("        CASE 0:\n")
+                .append("            sum = sum + 1;\n")
+                .append("        DEFAULT\n")
+                .append("            sum = sum - 1;\n")
+                .append("    END\n");
+        return builder.append("    RETURN 0;\n")
+                .append("END\n")
+                .toString();
+    }
+
+}
@@ -0,0 +1,108 @@
+package plc.project;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A source of UTF-8 encoded bytes viewed as a {@link CharSequence}, one
+ * {@code char} per byte, so it can be scanned in place by the {@link Lexer}.
+ * All characters which are significant to the lexer are ASCII, and bytes of
+ * multi-byte sequences are never ASCII, so they simply pass through string
+ * literals. The {@link Scanner} treats each multi-byte sequence as a single
+ * character where that matters (see {@link #sequenceEnd(int)}).
+ *
+ * Sub-sequences are {@link Slice}s of the same buffer and are only decoded
+ * into a {@link String} when {@link Slice#toString()} is called.
+ */
+final class ByteSource implements CharSequence {
+
+    private final ByteBuffer buffer;
+
+    ByteSource(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int length() {
+        return buffer.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(index) & 0xFF);
+    }
+
+    @Override
+    public Slice subSequence(int start, int end) {
+        return new Slice(start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return decode(0, buffer.limit());
+    }
+
+    /**
+     * Returns the index just past the UTF-8 sequence starting at the given
+     * index. Malformed sequences (a continuation byte without a lead byte, or
+     * a lead byte followed by too few continuation bytes) end after the bytes
+     * which belong together, and decode to U+FFFD.
+     */
+    int sequenceEnd(int index) {
+        int lead = buffer.get(index) & 0xFF;
+        int length = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        int end = index + 1;
+        while (end < index + length && end < buffer.limit() && (buffer.get(end) & 0xC0) == 0x80) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Decodes the given range of bytes as UTF-8.
+     */
+    String decode(int start, int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A range of the source, such as a token literal.
+     */
+    final class Slice implements CharSequence {
+
+        private final int start;
+        private final int length;
+
+        private Slice(int start, int length) {
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return ByteSource.this.charAt(start + index);
+        }
+
+        @Override
+        public Slice subSequence(int start, int end) {
+            return new Slice(this.start + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return decode(start, length);
+        }
+
+    }
+
+}
@@ -0,0 +1,247 @@
+package plc.project;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Maintains the tokens of a source which is edited over time, such as in an
+ * editor. Each {@link #edit(int, int, String)} only re-lexes the region
+ * damaged by the edit and splices the result into the previous tokens.
+ *
+ * Tokens before the edit are reused as they are. Lexing after the edit stops
+ * as soon as a token starts where a previous token started (shifted by the
+ * edit), since the rest of the input is unchanged and must produce the same
+ * tokens again; those are reused as well.
+ *
+ * The tokens are kept in a gap buffer: an array with a gap at the last edit,
+ * into which the re-lexed tokens are written. Tokens before the gap are stored
+ * at their position, and tokens after it at their position before the edits
+ * which moved them, so an edit which changes the length only adds to a single
+ * offset which is applied (with {@link Token#shift(int)}, sharing the literal)
+ * when a token after the gap is read. An edit thus costs the damaged tokens
+ * plus the tokens the gap moves over since the previous edit, which for
+ * typing in one place is independent of the size of the source. The source
+ * itself is a {@link StringBuilder} edited in place, which only moves the
+ * characters after the edit and allocates nothing.
+ */
+public final class IncrementalLexer {
+
+    /**
+     * The number of characters past the end of a token which the scanner may
+     * examine, such as the character after a '.' in a decimal.
+     */
+    private static final int LOOKAHEAD = 2;
+
+    private final SymbolTable symbols;
+    private final StringBuilder source;
+    private String string;
+    private Token[] tokens;
+    private int gapStart;
+    private int gapEnd;
+
+    /**
+     * The offset of the tokens after the gap from their stored position.
+     */
+    private int shift = 0;
+
+    public IncrementalLexer(String source) {
+        this(source, new SymbolTable());
+    }
+
+    private IncrementalLexer(String source, SymbolTable symbols) {
+        this(source, new Lexer(source, symbols).lex(), symbols);
+    }
+
+    /**
+     * Creates an incremental lexer from a source and the tokens previously
+     * lexed from it, which are copied.
+     */
+    public IncrementalLexer(String source, List<Token> tokens) {
+        this(source, tokens, new SymbolTable());
+    }
+
+    private IncrementalLexer(String source, List<Token> tokens, SymbolTable symbols) {
+        this.symbols = symbols;
+        this.source = new StringBuilder(source);
+        this.string = source;
+        this.tokens = tokens.toArray(new Token[tokens.size() + 16]);
+        this.gapStart = tokens.size();
+        this.gapEnd = this.tokens.length;
+    }
+
+    /**
+     * Returns the source, which is only copied into a string on the first call
+     * after an edit.
+     */
+    public String getSource() {
+        if (string == null) {
+            string = source.toString();
+        }
+        return string;
+    }
+
+    /**
+     * Returns an unmodifiable view of the tokens, which reflects later edits.
+     * Tokens after the last edit are moved to their position as they are read,
+     * so copy the list to keep the tokens of this version of the source.
+     */
+    public List<Token> getTokens() {
+        return new Tokens();
+    }
+
+    /**
+     * Replaces the characters in {@code [start, end)} of the source with the
+     * replacement and returns the updated tokens. If the new source cannot be
+     * lexed, the {@link ParseException} is thrown and the state is unchanged.
+     */
+    public List<Token> edit(int start, int end, String replacement) {
+        if (start < 0 || start > end || end > source.length()) {
+            throw new IndexOutOfBoundsException("Invalid edit range [" + start + ", " + end + ") for length " + source.length());
+        }
+        int offset = replacement.length() - (end - start);
+        int prefix = firstDamaged(start);
+        int index = prefix == 0 ? 0 : end(prefix - 1);
+        int suffix = firstAfter(end, prefix);
+        String replaced = source.substring(start, end);
+        source.replace(start, end, replacement);
+        List<Token> lexed;
+        try {
+            // The updated source is the same as the previous one before the
+            // edit, so lexing resumes where the last reused token ended.
+            Lexer lexer = new Lexer(source, symbols, EnumSet.noneOf(Lexer.Option.class));
+            lexer.restore(new Lexer.Snapshot(index, 0));
+            lexed = lexer.lex(start + replacement.length());
+            index = lexer.snapshot().getIndex();
+            while (index < source.length()) {
+                while (suffix < size() && start(suffix) < index - offset) {
+                    suffix++;
+                }
+                if (suffix < size() && start(suffix) == index - offset) {
+                    break;
+                }
+                lexed.addAll(lexer.lex(index + 1));
+                index = lexer.snapshot().getIndex();
+            }
+        } catch (RuntimeException e) {
+            source.replace(start, start + replacement.length(), replaced);
+            throw e;
+        }
+        string = null;
+        splice(prefix, index < source.length() ? suffix : size(), lexed, offset);
+        return getTokens();
+    }
+
+    /**
+     * Replaces the tokens in {@code [from, to)} with the lexed tokens, and
+     * moves the tokens after them by the offset.
+     */
+    private void splice(int from, int to, List<Token> lexed, int offset) {
+        moveGap(from);
+        Arrays.fill(tokens, gapEnd, gapEnd + to - from, null);
+        gapEnd += to - from;
+        shift += offset;
+        if (gapEnd - gapStart < lexed.size()) {
+            int after = tokens.length - gapEnd;
+            Token[] grown = new Token[Math.max(tokens.length * 2, gapStart + lexed.size() + after + 16)];
+            System.arraycopy(tokens, 0, grown, 0, gapStart);
+            System.arraycopy(tokens, gapEnd, grown, grown.length - after, after);
+            tokens = grown;
+            gapEnd = grown.length - after;
+        }
+        for (Token token : lexed) {
+            tokens[gapStart++] = token;
+        }
+    }
+
+    /**
+     * Moves the gap to before the given token, converting the tokens it moves
+     * over between their position and their stored position.
+     */
+    private void moveGap(int index) {
+        while (gapStart > index) {
+            tokens[--gapEnd] = tokens[--gapStart].shift(-shift);
+            tokens[gapStart] = null;
+        }
+        while (gapStart < index) {
+            tokens[gapStart++] = tokens[gapEnd].shift(shift);
+            tokens[gapEnd++] = null;
+        }
+    }
+
+    private int size() {
+        return tokens.length - (gapEnd - gapStart);
+    }
+
+    /**
+     * Returns the token at the given index as stored, without the offset.
+     */
+    private Token stored(int index) {
+        return tokens[index < gapStart ? index : index + gapEnd - gapStart];
+    }
+
+    private int start(int index) {
+        return index < gapStart ? tokens[index].getIndex() : stored(index).getIndex() + shift;
+    }
+
+    private int end(int index) {
+        return start(index) + stored(index).getLiteral().length();
+    }
+
+    /**
+     * Returns the index of the first token which could be affected by an edit
+     * at the given position, either because it overlaps the edit or because
+     * lexing it looked at characters within the edit.
+     */
+    private int firstDamaged(int start) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (end(middle) + LOOKAHEAD <= start) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first token, at or after {@code from}, which
+     * starts at or after the given position.
+     */
+    private int firstAfter(int position, int from) {
+        int low = from;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (start(middle) < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private final class Tokens extends AbstractList<Token> implements RandomAccess {
+
+        @Override
+        public Token get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+            }
+            return index < gapStart ? tokens[index] : tokens[index + gapEnd - gapStart].shift(shift);
+        }
+
+        @Override
+        public int size() {
+            return IncrementalLexer.this.size();
+        }
+
+    }
+
+}
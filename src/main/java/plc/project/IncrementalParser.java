@@ -0,0 +1,156 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reparses a source after an edit (see {@link Parser#parseIncremental(Ast.Source,
+ * List, List, int, int, int)}), reusing the globals and functions of the
+ * previous source which the edit did not touch.
+ *
+ * The previous tokens are split into declarations by a pre-scan over their
+ * kinds: a global ends with its {@code ;}, and functions are found as in
+ * {@link ParallelParser}. Declarations which end before the edit lexed the
+ * same and are reused. Declarations after the edit are reused from the first
+ * one whose first token starts a token of the new source (shifted by the
+ * edit), since the lexer produces the same tokens from there on, as in {@link
+ * IncrementalLexer}. Only the tokens in between are parsed, by their own
+ * parser over a view of the new tokens.
+ *
+ * As with {@link ParallelParser}, if the previous tokens do not split into the
+ * declarations of the previous source, if the tokens in between fail to
+ * parse, or if a global ends up after a function, no result is returned and
+ * the caller parses the whole source, which reports the same error as {@link
+ * Parser#parseSource()}.
+ */
+final class IncrementalParser {
+
+    /**
+     * The number of characters past the end of a token which the scanner may
+     * examine (see {@link IncrementalLexer}).
+     */
+    private static final int LOOKAHEAD = 2;
+
+    private IncrementalParser() {}
+
+    /**
+     * Returns the source of the new tokens, sharing the unchanged globals and
+     * functions of the previous source, or {@code null} if it cannot be parsed
+     * this way.
+     */
+    static Ast.Source parse(Ast.Source previous, List<Token> previousTokens, List<Token> tokens, int start, int end, int length) {
+        int globals = previous.getGlobals().size();
+        int[] boundaries = split(previousTokens, globals);
+        if (boundaries == null || boundaries.length - 1 != globals + previous.getFunctions().size()) {
+            return null;
+        }
+        int offset = length - (end - start);
+        int prefix = 0;
+        while (prefix < boundaries.length - 1 && end(previousTokens.get(boundaries[prefix + 1] - 1)) + LOOKAHEAD <= start) {
+            prefix++;
+        }
+        int suffix = prefix;
+        int resume = tokens.size();
+        while (suffix < boundaries.length - 1) {
+            Token token = previousTokens.get(boundaries[suffix]);
+            if (token.getIndex() >= end) {
+                int index = find(tokens, boundaries[prefix], token.getIndex() + offset);
+                if (index < tokens.size() && tokens.get(index).getIndex() == token.getIndex() + offset
+                        && tokens.get(index).getKind() == token.getKind()) {
+                    resume = index;
+                    break;
+                }
+            }
+            suffix++;
+        }
+        if (tokens.size() - resume != previousTokens.size() - boundaries[suffix]) {
+            return null;
+        }
+        Parser parser = new Parser(tokens.subList(boundaries[prefix], resume));
+        List<Ast.Global> parsedGlobals;
+        List<Ast.Function> parsedFunctions;
+        try {
+            parsedGlobals = parser.parseGlobals();
+            parsedFunctions = parser.parseFunctions();
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (!parser.isComplete()
+                || !parsedGlobals.isEmpty() && prefix > globals
+                || suffix < globals && !parsedFunctions.isEmpty()) {
+            // A global after a function is left to the sequential parser to
+            // report.
+            return null;
+        }
+        return new Ast.Source(
+                join(previous.getGlobals(), Math.min(prefix, globals), parsedGlobals, Math.min(suffix, globals)),
+                join(previous.getFunctions(), Math.max(prefix - globals, 0), parsedFunctions, Math.max(suffix - globals, 0))
+        );
+    }
+
+    /**
+     * Returns the boundaries of the declarations in the tokens, starting with
+     * 0 and ending with the number of tokens, where the first {@code globals}
+     * declarations are globals and the rest are functions, or {@code null} if
+     * the tokens do not split this way.
+     */
+    private static int[] split(List<Token> tokens, int globals) {
+        List<Integer> boundaries = new ArrayList<>();
+        int index = 0;
+        for (int i = 0; i < globals; i++) {
+            boundaries.add(index);
+            while (index < tokens.size() && tokens.get(index).getKind() != Token.Kind.SEMICOLON) {
+                index++;
+            }
+            if (index++ == tokens.size()) {
+                return null;
+            }
+        }
+        if (index < tokens.size()) {
+            int[] functions = ParallelParser.split(tokens, index, Integer.MAX_VALUE, 1);
+            if (functions == null) {
+                return null;
+            }
+            for (int i = 0; i < functions.length - 1; i++) {
+                boundaries.add(functions[i]);
+            }
+        }
+        boundaries.add(tokens.size());
+        return boundaries.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns the index of the first token, at or after {@code from}, which
+     * starts at or after the given position.
+     */
+    private static int find(List<Token> tokens, int from, int position) {
+        int low = from;
+        int high = tokens.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tokens.get(middle).getIndex() < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the nodes before {@code prefix} and from {@code suffix} of the
+     * previous list, with the parsed nodes in between.
+     */
+    private static <T> List<T> join(List<T> previous, int prefix, List<T> parsed, int suffix) {
+        List<T> nodes = new ArrayList<>(prefix + parsed.size() + previous.size() - suffix);
+        nodes.addAll(previous.subList(0, prefix));
+        nodes.addAll(parsed);
+        nodes.addAll(previous.subList(suffix, previous.size()));
+        return nodes;
+    }
+
+    private static int end(Token token) {
+        return token.getIndex() + token.getLiteral().length();
+    }
+
+}
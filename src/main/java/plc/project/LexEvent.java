@@ -0,0 +1,40 @@
+package plc.project;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for each call to {@link Lexer#lex()}, recording the size of the
+ * input and its longest token. The event is disabled by default and must be
+ * enabled in the recording settings (as {@code plc.project.Lex}), since the
+ * lexer only measures tokens while it is enabled (see {@link LexerMetrics}).
+ */
+@Name("plc.project.Lex")
+@Label("Lex")
+@Category({"PLC", "Lexer"})
+@Description("Lexing of a source, with its longest token")
+@Enabled(false)
+@StackTrace(false)
+final class LexEvent extends Event {
+
+    @Label("Characters")
+    int characters;
+
+    @Label("Tokens")
+    long tokens;
+
+    @Label("Longest Token Type")
+    String longestType;
+
+    @Label("Longest Token Index")
+    int longestIndex;
+
+    @Label("Longest Token Length")
+    int longestLength;
+
+}
@@ -1,7 +1,20 @@
 package plc.project;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 
 /**
@@ -18,17 +31,431 @@ import java.util.ArrayList;
  * The {@link #peek(String...)} and {@link #match(String...)} functions are * helpers you need to use, they will make the implementation a lot easier. */
 public final class Lexer {
 
+    /**
+     * Optional behaviour of the table-driven {@link #lex()}.
+     */
+    public enum Option {
+        /**
+         * Decodes the value of each literal token while it is scanned (see
+         * {@link Token#getValue()}), so the parser does not re-parse literals.
+         */
+        DECODE_LITERALS,
+        /**
+         * Records each malformed token in {@link #getErrors()} instead of
+         * throwing, and continues lexing after it, so that all errors in the
+         * input are reported by a single call to {@link #lex()}.
+         */
+        RECOVER,
+        /**
+         * Gives tokens {@link SourceView}s of the input as literals, which are
+         * only copied into a {@link String} when {@link Token#getLiteral()} is
+         * called, instead of interning identifiers and copying other literals.
+         * This only applies when lexing a {@link String}.
+         */
+        SOURCE_VIEWS,
+        /**
+         * Skips whitespace and finds the ends of identifiers and numbers
+         * several characters at a time with the incubating Vector API, when
+         * the {@code jdk.incubator.vector} module is available (see {@link
+         * #isVectorized()}). Otherwise, and when not lexing a {@link String},
+         * this has no effect.
+         */
+        VECTORIZE
+    }
+
+    /**
+     * An event which is never committed, only used to check whether {@link
+     * LexEvent} is enabled without allocating an event for every call.
+     */
+    private static final LexEvent EVENTS = new LexEvent();
+
     private final CharStream chars;
+    private final SymbolTable symbols;
+    private final Set<Option> options;
+    private final List<ParseException> errors = new ArrayList<>();
+    private final LineIndex lines;
+    private char[] array = null;
+    private LexerMetrics metrics = null;
 
     public Lexer(String input) {
-        chars = new CharStream(input);
+        this(input, new SymbolTable());
+    }
+
+    public Lexer(String input, Option... options) {
+        this(input, new SymbolTable(), options);
     }
 
     /**
-     * Repeatedly lexes the input using {@link #lexToken()}, also skipping over
-     * whitespace where appropriate.
+     * Creates a lexer which interns identifiers and keywords into the given
+     * symbol table, which may be shared by all lexers of a compilation.
+     */
+    public Lexer(String input, SymbolTable symbols, Option... options) {
+        this(input, symbols, options.length == 0 ? EnumSet.noneOf(Option.class) : EnumSet.copyOf(Arrays.asList(options)));
+    }
+
+    /**
+     * Creates a lexer over any character sequence. Token literals are taken
+     * with {@link CharSequence#subSequence(int, int)}, so sources which return
+     * lightweight slices (such as {@link ByteSource}) produce tokens whose
+     * literals are only materialized when read.
+     */
+    Lexer(CharSequence input, SymbolTable symbols, Set<Option> options) {
+        this(input, symbols, options, null);
+    }
+
+    /**
+     * Creates a lexer which vectorizes over the given copy of the input (see
+     * {@link #array()}), so that lexers of chunks of the same input share it.
+     */
+    Lexer(CharSequence input, SymbolTable symbols, Set<Option> options, char[] array) {
+        this.chars = new CharStream(input);
+        this.symbols = symbols;
+        this.options = options;
+        this.lines = new LineIndex(input);
+        this.array = array;
+    }
+
+    /**
+     * Creates a lexer over the memory-mapped contents of a UTF-8 (or ASCII)
+     * file. The file is scanned in place without being copied onto the heap,
+     * and token literals are decoded only when {@link Token#getLiteral()} is
+     * called. Token and {@link ParseException} indices are byte offsets.
+     */
+    public static Lexer map(Path path, Option... options) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to map: " + path);
+            }
+            return utf8(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), options);
+        }
+    }
+
+    /**
+     * Creates a lexer over UTF-8 (or ASCII) bytes, which are scanned without
+     * being decoded into a {@link String} first. Token literals and decoded
+     * values are only decoded when they are read, and multi-byte sequences
+     * are treated as one character, so tokens are the same as for the decoded
+     * input; a multi-byte operator is a single token, however, even if it is
+     * a surrogate pair in a {@link String}. Token and {@link ParseException}
+     * indices are byte offsets.
+     */
+    public static Lexer utf8(byte[] bytes, Option... options) {
+        return utf8(ByteBuffer.wrap(bytes), options);
+    }
+
+    /**
+     * Creates a lexer over the remaining bytes of the buffer like {@link
+     * #utf8(byte[], Option...)}, with indices relative to its position. The
+     * buffer must not be modified while the tokens are in use.
+     */
+    public static Lexer utf8(ByteBuffer buffer, Option... options) {
+        return new Lexer(new ByteSource(buffer.slice()), new SymbolTable(), options.length == 0 ? EnumSet.noneOf(Option.class) : EnumSet.copyOf(Arrays.asList(options)));
+    }
+
+    /**
+     * Returns a processor which lexes input as it is published in chunks, such
+     * as an upload being received, and publishes the tokens to a single
+     * subscriber, without buffering the whole input first. Backpressure is
+     * respected in both directions; see {@link TokenPublisher}. Tokens and
+     * errors are identical to {@link #lex()} over the concatenated chunks, and
+     * a {@link ParseException} is signalled through {@code onError}.
+     */
+    public static Flow.Processor<CharBuffer, Token> publisher(Option... options) {
+        return new TokenPublisher(options.length == 0 ? EnumSet.noneOf(Option.class) : EnumSet.copyOf(Arrays.asList(options)));
+    }
+
+    /**
+     * Lexes the remaining input with the table-driven {@link Scanner}, skipping
+     * over whitespace where appropriate. The result (and any exception thrown)
+     * is identical to {@link #lexPatterns()}, but no regex is evaluated and no
+     * objects are allocated apart from the tokens themselves. Identifiers are
+     * interned into the {@link SymbolTable}, so repeated names share a literal
+     * and keywords carry their {@link Token.Kind}.
+     *
+     * With {@link Option#RECOVER}, malformed tokens are omitted from the result
+     * and their errors are added to {@link #getErrors()} instead.
      */
     public List<Token> lex() {
+        List<Token> tokens = new ArrayList<>();
+        lex(tokens::add, chars.input.length());
+        return tokens;
+    }
+
+    /**
+     * Lexes the remaining tokens which start before the given index like
+     * {@link #lex()}, and then pauses before the next token. Lexing continues
+     * from there with the next call to a lex method, or from any {@link
+     * Snapshot} passed to {@link #restore(Snapshot)}.
+     */
+    public List<Token> lex(int limit) {
+        if (limit < chars.index || limit > chars.input.length()) {
+            throw new IndexOutOfBoundsException("Invalid limit " + limit + " for index " + chars.index + " and length " + chars.input.length());
+        }
+        List<Token> tokens = new ArrayList<>();
+        lex(tokens::add, limit);
+        return tokens;
+    }
+
+    /**
+     * Returns a snapshot of the position of the lexer, from which lexing can
+     * be restarted later with {@link #restore(Snapshot)}.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(chars.index, errors.size());
+    }
+
+    /**
+     * Restarts lexing from the given snapshot, discarding any errors recorded
+     * after it was taken. The snapshot may also have been taken from a lexer
+     * over a different input, in which case it is only valid if both inputs
+     * are the same before its index (and the characters just after it, which
+     * the scanner may look ahead at).
+     */
+    public void restore(Snapshot snapshot) {
+        if (snapshot.index > chars.input.length()) {
+            throw new IndexOutOfBoundsException("Snapshot index " + snapshot.index + " out of bounds for length " + chars.input.length());
+        }
+        chars.index = snapshot.index;
+        chars.skip();
+        while (errors.size() > snapshot.errors) {
+            errors.remove(errors.size() - 1);
+        }
+    }
+
+    /**
+     * Lexes the remaining input like {@link #lex()} into the given pipe, which
+     * is closed at the end or failed with the exception {@link #lex()} would
+     * throw. The pipe is read concurrently by {@link Parser#parsePipelined}.
+     * Errors (such as {@link OutOfMemoryError}) also fail the pipe, so that
+     * the parser never waits for tokens which will not come.
+     */
+    void lex(TokenPipe pipe) {
+        try {
+            lex(pipe::put, chars.input.length());
+            pipe.close();
+        } catch (Throwable e) {
+            pipe.fail(e);
+        }
+    }
+
+    private void lex(Consumer<Token> tokens, int limit) {
+        Scanner scanner = new Scanner(chars.input, symbols, options, array());
+        // Newlines are only recorded while lexing continues from where the
+        // line index has scanned up to, such as not after restoring a later
+        // snapshot; the index scans any gap itself when it is looked up.
+        boolean record = lines.isScanned(chars.index);
+        if (record) {
+            scanner.lines(lines);
+        }
+        int index;
+        if (metrics == null && !EVENTS.isEnabled()) {
+            index = lex(scanner, tokens, chars.index, limit);
+        } else {
+            LexEvent event = new LexEvent();
+            LexerMetrics.Counters counters = event.isEnabled() ? new LexerMetrics.Counters() : null;
+            long start = System.nanoTime();
+            event.begin();
+            index = lex(scanner, tokens, chars.index, limit, metrics, counters);
+            event.end();
+            long nanos = System.nanoTime() - start;
+            if (metrics != null) {
+                metrics.lexed(index - chars.index, nanos);
+            }
+            if (counters != null && event.shouldCommit()) {
+                event.characters = index - chars.index;
+                event.tokens = counters.getTokens();
+                event.longestType = counters.getLongestType() == null ? null : counters.getLongestType().name();
+                event.longestIndex = counters.getLongestIndex();
+                event.longestLength = counters.getLongestLength();
+                event.commit();
+            }
+        }
+        if (record) {
+            lines.complete(index);
+        }
+        chars.index = index;
+        chars.skip();
+    }
+
+    /**
+     * Lexes the tokens starting before the limit and returns the index after
+     * them (and any whitespace). This is the hot loop of {@link #lex()}.
+     */
+    private int lex(Scanner scanner, Consumer<Token> tokens, int index, int limit) {
+        boolean recover = options.contains(Option.RECOVER);
+        index = scanner.skip(index);
+        while (index < limit) {
+            int end;
+            try {
+                end = scanner.scan(index);
+            } catch (ParseException e) {
+                if (!recover) {
+                    throw e;
+                }
+                errors.add(e);
+                index = scanner.skip(scanner.recover(index, e));
+                continue;
+            }
+            tokens.accept(scanner.token(index, end));
+            index = scanner.skip(end);
+        }
+        return index;
+    }
+
+    /**
+     * Lexes like {@link #lex(Scanner, Consumer, int, int)}, also passing the
+     * time spent scanning each token to the metrics which are not {@code
+     * null}. This is a separate loop so lexing without metrics is unaffected.
+     */
+    private int lex(Scanner scanner, Consumer<Token> tokens, int index, int limit, LexerMetrics metrics, LexerMetrics counters) {
+        boolean recover = options.contains(Option.RECOVER);
+        index = scanner.skip(index);
+        while (index < limit) {
+            long start = System.nanoTime();
+            int end;
+            try {
+                end = scanner.scan(index);
+            } catch (ParseException e) {
+                if (!recover) {
+                    throw e;
+                }
+                errors.add(e);
+                index = scanner.skip(scanner.recover(index, e));
+                continue;
+            }
+            Token token = scanner.token(index, end);
+            long nanos = System.nanoTime() - start;
+            if (metrics != null) {
+                metrics.token(token.getType(), token.getIndex(), end - index, nanos);
+            }
+            if (counters != null) {
+                counters.token(token.getType(), token.getIndex(), end - index, nanos);
+            }
+            tokens.accept(token);
+            index = scanner.skip(end);
+        }
+        return index;
+    }
+
+    /**
+     * Sets the metrics which receive measurements from the following calls to
+     * {@link #lex()}, or {@code null} to stop measuring.
+     */
+    public void setMetrics(LexerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns true if {@link Option#VECTORIZE} is supported, which requires
+     * running with {@code --add-modules jdk.incubator.vector}.
+     */
+    public static boolean isVectorized() {
+        return Scanner.RUNS != null;
+    }
+
+    /**
+     * Returns the characters of the input for {@link Option#VECTORIZE}, which
+     * are copied out of the {@link String} once per lexer, or {@code null} if
+     * the input is not lexed vectorized.
+     */
+    private char[] array() {
+        if (array == null && options.contains(Option.VECTORIZE) && isVectorized() && chars.input instanceof String) {
+            array = ((String) chars.input).toCharArray();
+        }
+        return array;
+    }
+
+    /**
+     * Returns the line index of the input, which {@link #lex()} fills in as
+     * it goes, for converting token and error indices to lines and columns.
+     */
+    public LineIndex getLines() {
+        return lines;
+    }
+
+    /**
+     * Returns the errors recorded by {@link #lex()} with {@link Option#RECOVER},
+     * in the order they occur in the input.
+     */
+    public List<ParseException> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Lexes the remaining input like {@link #lex()}, splitting large inputs into
+     * chunks which are lexed in parallel on the common {@link ForkJoinPool}.
+     */
+    public List<Token> lexParallel() {
+        return lexParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Lexes the remaining input like {@link #lex()}, splitting large inputs into
+     * chunks which are lexed in parallel on the given pool. The result (and any
+     * exception thrown) is identical to {@link #lex()}; see {@link
+     * ParallelLexer} for how chunk boundaries are chosen and verified. Inputs
+     * lexed with {@link Option#RECOVER} are always lexed sequentially.
+     */
+    public List<Token> lexParallel(ForkJoinPool pool) {
+        if (chars.input.length() - chars.index < 2 * ParallelLexer.MIN_CHUNK || pool.getParallelism() < 2
+                || options.contains(Option.RECOVER)) {
+            return lex();
+        }
+        List<Token> tokens = ParallelLexer.lex(chars.input, chars.index, pool, ParallelLexer.MIN_CHUNK, options, array());
+        chars.index = chars.input.length();
+        chars.skip();
+        return tokens;
+    }
+
+    /**
+     * Lexes the remaining input like {@link #lex()}, but stores the tokens in a
+     * compact {@link TokenBuffer} over the input instead of creating them.
+     * Errors are recovered from with {@link Option#RECOVER} and newlines are
+     * recorded in the line index as with {@link #lex()}. The buffer holds no
+     * token values, so {@link Option#DECODE_LITERALS} has no effect; the
+     * parser decodes literals from the source instead.
+     */
+    public TokenBuffer lexBuffer() {
+        TokenBuffer tokens = new TokenBuffer(chars.input, (chars.input.length() - chars.index) / 4);
+        Set<Option> scanned = EnumSet.noneOf(Option.class);
+        scanned.addAll(options);
+        scanned.remove(Option.DECODE_LITERALS);
+        Scanner scanner = new Scanner(chars.input, null, scanned, array());
+        boolean record = lines.isScanned(chars.index);
+        if (record) {
+            scanner.lines(lines);
+        }
+        boolean recover = options.contains(Option.RECOVER);
+        int index = scanner.skip(chars.index);
+        while (index < chars.input.length()) {
+            int end;
+            try {
+                end = scanner.scan(index);
+            } catch (ParseException e) {
+                if (!recover) {
+                    throw e;
+                }
+                errors.add(e);
+                index = scanner.skip(scanner.recover(index, e));
+                continue;
+            }
+            tokens.add(scanner.type(), index, end);
+            index = scanner.skip(end);
+        }
+        if (record) {
+            lines.complete(index);
+        }
+        chars.index = index;
+        chars.skip();
+        return tokens;
+    }
+
+    /**
+     * Repeatedly lexes the input using {@link #lexToken()}, also skipping over
+     * whitespace where appropriate. This is the original pattern-based path and
+     * is kept as the reference implementation for {@link #lex()}.
+     */
+    List<Token> lexPatterns() {
         List<Token> tokens = new ArrayList<>();
         while (chars.has(0)) { // While there are characters left to lex
             if (peek("[\b\\s]")) { // Skip whitespace
@@ -99,7 +526,7 @@ public final class Lexer {
             chars.advance();
         }
         // Extract the identifier value
-        String value = chars.input.substring(startIndex, chars.index);
+        CharSequence value = chars.input.subSequence(startIndex, chars.index);
         // Return the token
         return chars.emit(Token.Type.IDENTIFIER);
     } //TODO
@@ -231,65 +658,31 @@ public final class Lexer {
     }  //TODO
 
     public Token lexOperator() {
-        if(chars.has(0) && chars.has(1))
-        {
-            String twoString = String.valueOf(chars.get(0))+ String.valueOf(chars.get(1));
-            if (twoString.matches("==|!=|<=|>=|&&|\\|\\|")) {
-                // Consume the operator character(s)
-                if (chars.has(0)) { // Ensure there's at least one character to check
-                    char firstChar = chars.get(0);
-                    if (firstChar == '=' || firstChar == '!' || firstChar == '<' || firstChar == '>' || firstChar == '&' || firstChar == '|') {
-                        chars.advance(); // Consume first character of potential operator
-                        if (chars.has(0)) { // Check if there's another character
-                            char secondChar = chars.get(0);
-                            // Check if the second character forms a valid two-character operator with the first
-                            if ((firstChar == '=' && secondChar == '=') ||
-                                    (firstChar == '!' && secondChar == '=') ||
-                                    (firstChar == '<' && secondChar == '=') ||
-                                    (firstChar == '>' && secondChar == '=') ||
-                                    (firstChar == '&' && secondChar == '&') ||
-                                    (firstChar == '|' && secondChar == '|')) {
-                                chars.advance(); // Consume second character of operator
-                                return chars.emit(Token.Type.OPERATOR);
-                            }
-                        }
-                    }
-                }
-                return chars.emit(Token.Type.OPERATOR);
-            }
-            else if (peek("[\\S&&[^\\x08]]")) {
-                // Consume the single character of the operator
-                if (chars.has(0))
-                {
-                    char a = chars.get(0);
-                    chars.advance();
-                }
-                else {
-                    chars.advance();
-                }
-                return chars.emit(Token.Type.OPERATOR); // Emit the operator token with the single-character value
-            }
-            else {
-                throw new ParseException("Expected operator", chars.index);
-            }
+        if (!chars.has(0) || Scanner.classify(chars.get(0)) == Scanner.SPACE) {
+            throw new ParseException("Expected operator", chars.index);
         }
-
-        else if (peek("[\\S&&[^\\x08]]")) {
-            // Consume the single character of the operator
-            if (chars.has(0))
-            {
-                char a = chars.get(0);
-                chars.advance();
+        boolean isDouble = false;
+        if (chars.has(1)) {
+            char second = chars.get(1);
+            switch (chars.get(0)) {
+                case '=':
+                case '!':
+                case '<':
+                case '>':
+                    isDouble = second == '=';
+                    break;
+                case '&':
+                case '|':
+                    isDouble = second == chars.get(0);
+                    break;
             }
-            else {
-                chars.advance();
-            }
-            return chars.emit(Token.Type.OPERATOR); // Emit the operator token with the single-character value
         }
-        else {
-            throw new ParseException("Expected operator", chars.index);
+        chars.advance();
+        if (isDouble) {
+            chars.advance();
         }
-    } //TODO
+        return chars.emit(Token.Type.OPERATOR);
+    }
 
     /**
      * Returns true if the next sequence of characters match the given patterns,
@@ -321,6 +714,29 @@ public final class Lexer {
         return peek;
     } //TODO (in Lecture)
 
+    /**
+     * An immutable position of a {@link Lexer} between tokens, along with the
+     * number of errors it had recorded, taken with {@link #snapshot()}.
+     */
+    public static final class Snapshot {
+
+        private final int index;
+        private final int errors;
+
+        Snapshot(int index, int errors) {
+            this.index = index;
+            this.errors = errors;
+        }
+
+        /**
+         * Returns the index in the input at which lexing continues.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+    }
+
     /**
      * A helper class maintaining the input string, current index of the char
      * stream, and the current length of the token being matched.
@@ -330,11 +746,11 @@ public final class Lexer {
      * ParseException} which is thrown.
      */
     public static final class CharStream {
-        private final String input;
+        private final CharSequence input;
         private int index = 0;
         private int length = 0;
 
-        public CharStream(String input) {
+        public CharStream(CharSequence input) {
             this.input = input;
         }
 
@@ -358,7 +774,10 @@ public final class Lexer {
         public Token emit(Token.Type type) {
             int start = index - length;
             skip();
-            return new Token(type, input.substring(start, index), start);
+            if (type == Token.Type.OPERATOR) {
+                return Scanner.operator(input, start, index, start);
+            }
+            return new Token(type, input.subSequence(start, index), start);
         }
     }
 }
\ No newline at end of file
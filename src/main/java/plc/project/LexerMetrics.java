@@ -0,0 +1,120 @@
+package plc.project;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Receives measurements from {@link Lexer#lex()} when set with {@link
+ * Lexer#setMetrics(LexerMetrics)}, such as to find inputs which are slow to
+ * lex. Without metrics (and without a JFR recording of {@link LexEvent}), the
+ * lexer runs a loop which takes no measurements and creates no event.
+ *
+ * The time of each token is the time spent scanning it, which corresponds to
+ * the {@code lexX} method for its type in the pattern-based lexer.
+ */
+public interface LexerMetrics {
+
+    /**
+     * Called for each token lexed, with its index and length in the input
+     * and the nanoseconds spent scanning it.
+     */
+    void token(Token.Type type, int index, int length, long nanos);
+
+    /**
+     * Called at the end of each call to lex, with the number of characters
+     * (or bytes, for UTF-8 input) lexed and the nanoseconds it took.
+     */
+    void lexed(int characters, long nanos);
+
+    /**
+     * Metrics which add up the counts and times of each token type, the total
+     * characters and time, and the longest token. This is not thread-safe, and
+     * should only be set on one lexer at a time.
+     */
+    final class Counters implements LexerMetrics {
+
+        private final Map<Token.Type, long[]> types = new EnumMap<>(Token.Type.class);
+        private long characters = 0;
+        private long nanos = 0;
+        private Token.Type longestType = null;
+        private int longestIndex = -1;
+        private int longestLength = 0;
+
+        @Override
+        public void token(Token.Type type, int index, int length, long nanos) {
+            long[] counters = types.computeIfAbsent(type, t -> new long[2]);
+            counters[0]++;
+            counters[1] += nanos;
+            if (length > longestLength) {
+                longestType = type;
+                longestIndex = index;
+                longestLength = length;
+            }
+        }
+
+        @Override
+        public void lexed(int characters, long nanos) {
+            this.characters += characters;
+            this.nanos += nanos;
+        }
+
+        public long getCount(Token.Type type) {
+            long[] counters = types.get(type);
+            return counters == null ? 0 : counters[0];
+        }
+
+        /**
+         * Returns the total nanoseconds spent scanning tokens of the type.
+         */
+        public long getNanos(Token.Type type) {
+            long[] counters = types.get(type);
+            return counters == null ? 0 : counters[1];
+        }
+
+        public long getTokens() {
+            long tokens = 0;
+            for (long[] counters : types.values()) {
+                tokens += counters[0];
+            }
+            return tokens;
+        }
+
+        public long getCharacters() {
+            return characters;
+        }
+
+        /**
+         * Returns the total nanoseconds spent lexing, including whitespace and
+         * creating tokens.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getCharactersPerSecond() {
+            return nanos == 0 ? 0 : characters * 1e9 / nanos;
+        }
+
+        /**
+         * Returns the type of the longest token, or {@code null} if no tokens
+         * have been lexed.
+         */
+        public Token.Type getLongestType() {
+            return longestType;
+        }
+
+        /**
+         * Returns the index of the longest token, or -1 if no tokens have been
+         * lexed. If several tokens are the longest, this is the first.
+         */
+        public int getLongestIndex() {
+            return longestIndex;
+        }
+
+        public int getLongestLength() {
+            return longestLength;
+        }
+
+    }
+
+}
@@ -0,0 +1,118 @@
+package plc.project;
+
+import java.util.Arrays;
+
+/**
+ * Converts character indices into a source, such as those of {@link Token}s
+ * and {@link ParseException}s, into line and column numbers (both starting at
+ * 1). Lines are terminated by {@code '\n'}.
+ *
+ * The table of line start offsets is filled in by {@link Lexer#lex()} as it
+ * skips over newlines, so looking up positions in lexed input needs no extra
+ * pass over the source; any part of the source the lexer has not reached is
+ * scanned the first time a position in it is looked up. Lookups are a binary
+ * search over the table. The index is not thread-safe.
+ */
+public final class LineIndex {
+
+    private final CharSequence source;
+    private int[] starts = new int[16];
+    private int lines = 1;
+
+    /**
+     * All newlines before this index have been recorded, and none after it.
+     */
+    private int scanned = 0;
+
+    public LineIndex(CharSequence source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns the line containing the given index, which may also be the
+     * length of the source.
+     */
+    public int getLine(int index) {
+        return line(index) + 1;
+    }
+
+    public int getColumn(int index) {
+        return index - starts[line(index)] + 1;
+    }
+
+    /**
+     * Returns the index of the first character of the given line.
+     */
+    public int getLineStart(int line) {
+        if (line < 1) {
+            throw new IndexOutOfBoundsException("Invalid line " + line);
+        }
+        while (line > lines && scanned < source.length()) {
+            scan(Math.min(source.length(), scanned + 4096));
+        }
+        if (line > lines) {
+            throw new IndexOutOfBoundsException("Invalid line " + line + " for " + lines + " lines");
+        }
+        return starts[line - 1];
+    }
+
+    /**
+     * Records the newline at the given index, which is called by the lexer for
+     * each newline in order.
+     */
+    void newline(int index) {
+        if (index >= scanned) {
+            add(index + 1);
+            scanned = index + 1;
+        }
+    }
+
+    /**
+     * Returns true if all newlines before the given index have been recorded,
+     * so that newlines from there on can be recorded with {@link
+     * #newline(int)}.
+     */
+    boolean isScanned(int index) {
+        return index <= scanned;
+    }
+
+    /**
+     * Records all newlines before the given index which have not been recorded
+     * yet.
+     */
+    void scan(int end) {
+        for (int i = scanned; i < end; i++) {
+            if (source.charAt(i) == '\n') {
+                add(i + 1);
+            }
+        }
+        scanned = Math.max(scanned, end);
+    }
+
+    /**
+     * Marks the source as scanned up to the given index, when the lexer has
+     * passed it and has recorded all newlines before it.
+     */
+    void complete(int end) {
+        scanned = Math.max(scanned, end);
+    }
+
+    private int line(int index) {
+        if (index < 0 || index > source.length()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + source.length());
+        }
+        if (index >= scanned) {
+            scan(Math.min(index + 1, source.length()));
+        }
+        int line = Arrays.binarySearch(starts, 0, lines, index);
+        return line >= 0 ? line : -line - 2;
+    }
+
+    private void add(int start) {
+        if (lines == starts.length) {
+            starts = Arrays.copyOf(starts, lines * 2);
+        }
+        starts[lines++] = start;
+    }
+
+}
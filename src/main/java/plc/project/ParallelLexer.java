@@ -0,0 +1,151 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Lexes large inputs in parallel by splitting them into chunks, lexing the
+ * chunks on a {@link ForkJoinPool}, and merging the results in order.
+ *
+ * Chunks are split at whitespace, which is only a safe boundary if it is not
+ * inside a string or character literal. This is guessed with a cheap scan that
+ * prefers newlines (which can never appear within a valid literal) and is then
+ * verified while merging: a chunk is only accepted if the previous chunk ended
+ * exactly where it started. Otherwise, it is lexed again from the true end of
+ * the previous chunk, so the result is always identical to {@link Lexer#lex()}.
+ *
+ * Each chunk interns identifiers into its own {@link SymbolTable}, since the
+ * tables are not thread-safe; keywords are still shared by all chunks.
+ */
+final class ParallelLexer {
+
+    /**
+     * The default minimum size of a chunk, below which splitting is not
+     * worthwhile.
+     */
+    static final int MIN_CHUNK = 1 << 16;
+
+    private ParallelLexer() {}
+
+    /**
+     * Lexes {@code input} from index {@code start} using the given pool, with
+     * chunks of at least {@code minChunk} characters. All chunks vectorize
+     * over the same copy of the input, if it is not {@code null} (see {@link
+     * Scanner#Scanner(CharSequence, SymbolTable, Set, char[])}).
+     */
+    static List<Token> lex(CharSequence input, int start, ForkJoinPool pool, int minChunk, Set<Lexer.Option> options, char[] array) {
+        int[] boundaries = split(input, start, pool.getParallelism() * 4, minChunk);
+        Chunk[] chunks = new Chunk[boundaries.length - 1];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new Chunk(input, boundaries[i], boundaries[i + 1], options, array);
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(chunks);
+            }
+        });
+        int size = 0;
+        for (Chunk chunk : chunks) {
+            size += chunk.tokens.size();
+        }
+        List<Token> tokens = new ArrayList<>(size);
+        int next = new Scanner(input).skip(start);
+        for (Chunk chunk : chunks) {
+            if (chunk.first != next) {
+                chunk.relex(next);
+            } else if (chunk.error != null) {
+                throw chunk.error;
+            }
+            tokens.addAll(chunk.tokens);
+            next = chunk.next;
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the chunk boundaries, starting with {@code start} and ending with
+     * the length of the input. Each intermediate boundary is a whitespace
+     * character, preferably a newline, at or after the ideal split point.
+     */
+    static int[] split(CharSequence input, int start, int count, int minChunk) {
+        int size = Math.max(Math.max(minChunk, 1), (input.length() - start) / Math.max(count, 1));
+        List<Integer> boundaries = new ArrayList<>();
+        boundaries.add(start);
+        int target = start + size;
+        while (target < input.length()) {
+            int boundary = findBoundary(input, target, Math.min(target + size / 2, input.length()));
+            if (boundary >= 0 && boundary < input.length()) {
+                boundaries.add(boundary);
+                target = boundary + size;
+            } else {
+                target += size;
+            }
+        }
+        boundaries.add(input.length());
+        return boundaries.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int findBoundary(CharSequence input, int from, int to) {
+        int space = -1;
+        for (int i = from; i < to; i++) {
+            char c = input.charAt(i);
+            if (c == '\n') {
+                return i;
+            } else if (space < 0 && Scanner.classify(c) == Scanner.SPACE) {
+                space = i;
+            }
+        }
+        return space;
+    }
+
+    /**
+     * A range of the input lexed by its own {@link Lexer}, which is restored to
+     * a speculative {@link Lexer.Snapshot} at the start of the range and pauses
+     * at its end.
+     */
+    private static final class Chunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Lexer lexer;
+        private final int limit;
+        private final int first;
+        private List<Token> tokens = new ArrayList<>();
+        private ParseException error;
+        private int next;
+
+        private Chunk(CharSequence input, int start, int limit, Set<Lexer.Option> options, char[] array) {
+            this.lexer = new Lexer(input, new SymbolTable(), options, array);
+            this.limit = limit;
+            this.first = new Scanner(input).skip(start);
+            lexer.restore(new Lexer.Snapshot(first, 0));
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                tokens = lexer.lex(Math.max(first, limit));
+                next = lexer.snapshot().getIndex();
+            } catch (ParseException e) {
+                error = e;
+            }
+        }
+
+        /**
+         * Lexes the chunk again starting from where the previous chunk ended,
+         * when the speculative boundary turned out to be within a token.
+         */
+        private void relex(int index) {
+            lexer.restore(new Lexer.Snapshot(index, 0));
+            tokens = lexer.lex(Math.max(index, limit));
+            next = lexer.snapshot().getIndex();
+        }
+
+    }
+
+}
@@ -0,0 +1,134 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses the functions of a source in parallel (see {@link
+ * Parser#parseParallel(List, ForkJoinPool)}).
+ *
+ * A pre-scan over the token kinds finds where each function ends by counting
+ * blocks: {@code DO} and {@code SWITCH} open a block, which {@code END}
+ * closes, so a function ends with the {@code END} closing the block of its
+ * {@code DO}. The functions are grouped into batches of consecutive tokens,
+ * and each batch is parsed on the pool by its own parser over a view of the
+ * tokens. This is only a guess for invalid sources, so if the pre-scan fails,
+ * or if any batch fails to parse or does not parse exactly its tokens, no
+ * result is returned and the caller parses sequentially, which reports the
+ * same error as {@link Parser#parseSource()}.
+ */
+final class ParallelParser {
+
+    /**
+     * The default minimum number of tokens in a batch, below which parsing a
+     * batch on the pool is not worthwhile.
+     */
+    static final int MIN_BATCH = 1 << 12;
+
+    private ParallelParser() {}
+
+    /**
+     * Parses the functions in the tokens from index {@code start} to the end
+     * using the given pool, in batches of at least {@code minBatch} tokens, or
+     * returns {@code null} if they cannot be parsed this way.
+     */
+    static List<Ast.Function> parseFunctions(List<Token> tokens, int start, ForkJoinPool pool, int minBatch) {
+        int[] boundaries = split(tokens, start, pool.getParallelism() * 4, minBatch);
+        if (boundaries == null) {
+            return null;
+        }
+        Batch[] batches = new Batch[boundaries.length - 1];
+        for (int i = 0; i < batches.length; i++) {
+            batches[i] = new Batch(tokens.subList(boundaries[i], boundaries[i + 1]));
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(batches);
+            }
+        });
+        List<Ast.Function> functions = new ArrayList<>();
+        for (Batch batch : batches) {
+            if (batch.functions == null) {
+                return null;
+            }
+            functions.addAll(batch.functions);
+        }
+        return functions;
+    }
+
+    /**
+     * Returns the batch boundaries, starting with {@code start} and ending with
+     * the number of tokens, where each boundary is the start of a function, or
+     * {@code null} if the tokens are not a sequence of functions with balanced
+     * blocks.
+     */
+    static int[] split(List<Token> tokens, int start, int count, int minBatch) {
+        int size = Math.max(Math.max(minBatch, 1), (tokens.size() - start) / Math.max(count, 1));
+        List<Integer> boundaries = new ArrayList<>();
+        boundaries.add(start);
+        int depth = 0;
+        for (int i = start; i < tokens.size(); i++) {
+            switch (tokens.get(i).getKind()) {
+                case FUN:
+                    if (depth != 0) {
+                        return null;
+                    } else if (i - boundaries.get(boundaries.size() - 1) >= size) {
+                        boundaries.add(i);
+                    }
+                    break;
+                case DO:
+                case SWITCH:
+                    depth++;
+                    break;
+                case END:
+                    if (--depth < 0) {
+                        return null;
+                    }
+                    break;
+                default:
+                    if (depth == 0 && (i == start || tokens.get(i - 1).getKind() == Token.Kind.END)) {
+                        // Anything but FUN after a function is left to the
+                        // sequential parser to report.
+                        return null;
+                    }
+            }
+        }
+        if (depth != 0) {
+            return null;
+        }
+        boundaries.add(tokens.size());
+        return boundaries.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static final class Batch extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Token> tokens;
+        private List<Ast.Function> functions;
+
+        private Batch(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                Parser parser = new Parser(tokens);
+                List<Ast.Function> functions = parser.parseFunctions();
+                if (parser.isComplete()) {
+                    this.functions = functions;
+                }
+            } catch (RuntimeException | StackOverflowError e) {
+                // The sequential parser reports the error, and has the stack
+                // size of the calling thread for deeply nested expressions.
+            }
+        }
+
+    }
+
+}
@@ -9,6 +9,15 @@ public final class ParseException extends RuntimeException {
         this.index = index;
     }
 
+    /**
+     * Creates an exception without a stack trace, for errors which are
+     * collected rather than thrown (see {@link Lexer.Option#RECOVER}).
+     */
+    ParseException(String message, int index, boolean stackTrace) {
+        super(message, null, false, stackTrace);
+        this.index = index;
+    }
+
     public int getIndex() {
         return index;
     }
@@ -2,9 +2,16 @@ package plc.project;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The parser takes the sequence of tokens emitted by the lexer and turns that
@@ -21,41 +28,247 @@ import java.util.Optional;
  */
 public final class Parser {
 
+    /**
+     * Optional behaviour of the parser.
+     */
+    public enum Option {
+        /**
+         * Parses expressions and blocks with explicit stacks instead of
+         * recursion, so that deeply nested groups, operands, arguments and
+         * blocks (such as in generated code) do not overflow the Java stack.
+         * The results and errors are the same as parsing recursively, and
+         * parsing remains linear in the number of tokens.
+         */
+        ITERATIVE
+    }
+
+    private static final int PIPE_CAPACITY = 4096;
+
+    /**
+     * The precedence levels of binary operators, from lowest to highest.
+     */
+    private static final int LOGICAL = 1;
+    private static final int COMPARISON = 2;
+    private static final int ADDITIVE = 3;
+    private static final int MULTIPLICATIVE = 4;
+
+    /**
+     * The precedence of each kind of token as a binary operator, indexed by
+     * ordinal, or 0 if it is not one. Operators are added with {@link
+     * #binary(int, Token.Kind...)}.
+     */
+    private static final int[] PRECEDENCE = new int[Token.Kind.values().length];
+
+    static {
+        binary(LOGICAL, Token.Kind.AND, Token.Kind.OR);
+        binary(COMPARISON, Token.Kind.LESS, Token.Kind.GREATER, Token.Kind.EQUAL, Token.Kind.NOT_EQUAL);
+        binary(ADDITIVE, Token.Kind.PLUS, Token.Kind.MINUS);
+        binary(MULTIPLICATIVE, Token.Kind.STAR, Token.Kind.SLASH, Token.Kind.CARET);
+    }
+
     private final TokenStream tokens;
+    private final boolean iterative;
 
-    public Parser(List<Token> tokens) {
-        this.tokens = new TokenStream(tokens);
+    public Parser(List<Token> tokens, Option... options) {
+        this(new ListTokenStream(tokens), options);
     }
 
     /**
-     * Parses the {@code source} rule.
+     * Creates a parser reading token types and literals directly from the
+     * arrays of a {@link TokenBuffer}.
      */
+    public Parser(TokenBuffer tokens, Option... options) {
+        this(new BufferTokenStream(tokens), options);
+    }
 
-    public Ast.Source parseSource() throws ParseException {
-        List<Ast.Global> globals = new ArrayList<>();
-        List<Ast.Function> functions = new ArrayList<>();
-        while (peek("LIST") || peek("VAR") || peek("VAL")) {
-            globals.add(parseGlobal());
+    private Parser(TokenStream tokens, Option... options) {
+        this.tokens = tokens;
+        this.iterative = Arrays.asList(options).contains(Option.ITERATIVE);
+    }
+
+    private static void binary(int precedence, Token.Kind... kinds) {
+        for (Token.Kind kind : kinds) {
+            PRECEDENCE[kind.ordinal()] = precedence;
         }
-        while (peek("FUN")) {
-            functions.add(parseFunction());
+    }
+
+    /**
+     * Lexes and parses the source of the lexer concurrently: the lexer runs on
+     * the given executor and hands tokens to the parser, on the calling thread,
+     * through a bounded {@link TokenPipe}, so parsing starts with the first
+     * token instead of after the whole input has been lexed.
+     *
+     * The result and any exception are the same as parsing the tokens of
+     * {@link Lexer#lex()}; in particular, an error from the lexer is thrown
+     * even if the parser fails earlier in the input.
+     *
+     * The executor must run the lexer either on another thread or immediately
+     * on the calling thread, within {@link Executor#execute(Runnable)}. In the
+     * latter case (such as with {@code Runnable::run}), the pipe would fill up
+     * with nobody to read it, so the lexer lexes into a list instead and the
+     * tokens are parsed after it returns.
+     */
+    public static Ast.Source parsePipelined(Lexer lexer, Executor executor) throws ParseException {
+        return parsePipelined(lexer, executor, PIPE_CAPACITY);
+    }
+
+    static Ast.Source parsePipelined(Lexer lexer, Executor executor, int capacity) throws ParseException {
+        TokenPipe pipe = new TokenPipe(capacity);
+        Thread caller = Thread.currentThread();
+        CompletableFuture<List<Token>> synchronous = new CompletableFuture<>();
+        executor.execute(() -> {
+            if (Thread.currentThread() != caller) {
+                lexer.lex(pipe);
+                return;
+            }
+            try {
+                synchronous.complete(lexer.lex());
+            } catch (Throwable e) {
+                synchronous.completeExceptionally(e);
+            }
+        });
+        if (synchronous.isDone()) {
+            List<Token> tokens;
+            try {
+                tokens = synchronous.join();
+            } catch (CompletionException e) {
+                throw unchecked(e.getCause());
+            }
+            return new Parser(tokens).parseSource();
+        }
+        Throwable failure;
+        try {
+            Ast.Source source = new Parser(new PipeTokenStream(pipe)).parseSource();
+            failure = pipe.drain();
+            if (failure == null) {
+                return source;
+            }
+        } catch (RuntimeException e) {
+            failure = pipe.drain();
+            if (failure == null) {
+                throw e;
+            }
+        } catch (Error e) {
+            pipe.cancel();
+            throw e;
+        }
+        throw unchecked(failure);
+    }
+
+    /**
+     * Throws the given error, or returns the given runtime exception to be
+     * thrown, as the lexer only fails with unchecked exceptions.
+     */
+    private static RuntimeException unchecked(Throwable failure) {
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return (RuntimeException) failure;
+    }
+
+    /**
+     * Parses the tokens like {@link #parseSource()} on the common {@link
+     * ForkJoinPool}, parsing functions in parallel.
+     */
+    public static Ast.Source parseParallel(List<Token> tokens) throws ParseException {
+        return parseParallel(tokens, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses the tokens like {@link #parseSource()}, but parses batches of
+     * functions in parallel on the given pool after the globals; see {@link
+     * ParallelParser} for how the functions are found. The result (and any
+     * exception thrown) is identical to {@link #parseSource()}, which is used
+     * for sources with few tokens and to report errors.
+     */
+    public static Ast.Source parseParallel(List<Token> tokens, ForkJoinPool pool) throws ParseException {
+        return parseParallel(tokens, pool, ParallelParser.MIN_BATCH);
+    }
+
+    static Ast.Source parseParallel(List<Token> tokens, ForkJoinPool pool, int minBatch) throws ParseException {
+        Parser parser = new Parser(tokens);
+        List<Ast.Global> globals = parser.parseGlobals();
+        int start = parser.tokens.index;
+        if (tokens.size() - start >= 2 * minBatch && pool.getParallelism() >= 2) {
+            List<Ast.Function> functions = ParallelParser.parseFunctions(tokens, start, pool, minBatch);
+            if (functions != null) {
+                return new Ast.Source(globals, functions);
+            }
         }
+        return new Parser(tokens).parseSource();
+    }
+
+    /**
+     * Parses the tokens of an edited source like {@link #parseSource()}, but
+     * only reparses the globals and functions affected by the edit and reuses
+     * the others from the previous source, so unchanged nodes are the same
+     * instances as before (including any analysis stored in them). The edit
+     * replaced the characters in {@code [start, end)} of the previous source
+     * with {@code length} characters, as with {@link IncrementalLexer#edit(int,
+     * int, String)}, and the previous source must have been parsed from the
+     * previous tokens.
+     *
+     * The result (and any exception thrown) is equal to {@link #parseSource()}
+     * on the new tokens, which is used if the edit cannot be reparsed on its
+     * own; see {@link IncrementalParser}.
+     */
+    public static Ast.Source parseIncremental(Ast.Source previous, List<Token> previousTokens, List<Token> tokens, int start, int end, int length) throws ParseException {
+        Ast.Source source = IncrementalParser.parse(previous, previousTokens, tokens, start, end, length);
+        return source != null ? source : new Parser(tokens).parseSource();
+    }
+
+    /**
+     * Parses the {@code source} rule.
+     */
+
+    public Ast.Source parseSource() throws ParseException {
+        List<Ast.Global> globals = parseGlobals();
+        List<Ast.Function> functions = parseFunctions();
         if (tokens.has(0)) {
             throw new ParseException("Unexpected token at the end of input", tokens.get(0).getIndex());
         }
         return new Ast.Source(globals, functions);
     } //TODO
 
+    /**
+     * Parses the globals at the start of the {@code source} rule.
+     */
+    List<Ast.Global> parseGlobals() throws ParseException {
+        List<Ast.Global> globals = new ArrayList<>();
+        while (peek(Token.Kind.LIST) || peek(Token.Kind.VAR) || peek(Token.Kind.VAL)) {
+            globals.add(parseGlobal());
+        }
+        return globals;
+    }
+
+    /**
+     * Parses the functions following the globals in the {@code source} rule.
+     */
+    List<Ast.Function> parseFunctions() throws ParseException {
+        List<Ast.Function> functions = new ArrayList<>();
+        while (peek(Token.Kind.FUN)) {
+            functions.add(parseFunction());
+        }
+        return functions;
+    }
+
+    /**
+     * Returns true if all tokens have been parsed.
+     */
+    boolean isComplete() {
+        return !tokens.has(0);
+    }
+
     /**
      * Parses the {@code global} rule. This method should only be called if the
      * next tokens start a global, aka {@code LIST|VAL|VAR}.
      */
     public Ast.Global parseGlobal() throws ParseException {
-        if (peek("LIST")) {
+        if (peek(Token.Kind.LIST)) {
             return parseList();
-        } else if (peek("VAR")) {
+        } else if (peek(Token.Kind.VAR)) {
             return parseMutable();
-        } else if (peek("VAL")) {
+        } else if (peek(Token.Kind.VAL)) {
             return parseImmutable();
         } else {
             throw new ParseException("Expected 'LIST', 'VAR', or 'VAL'", tokens.has(0) ? tokens.get(0).getIndex() : tokens.index);
@@ -67,31 +280,31 @@ public final class Parser {
      * next token declares a list, aka {@code LIST}.
      */
     public Ast.Global parseList() throws ParseException {
-        if (!match("LIST"))
+        if (!match(Token.Kind.LIST))
             throw new ParseException("Expected 'LIST'", tokens.has(0) ? tokens.get(0).getIndex() : -1);
         Token nameToken = tokens.get(0);
         if (!match(Token.Type.IDENTIFIER))
             throw new ParseException("Expected identifier", tokens.has(0) ? tokens.get(0).getIndex() : -1);
-        if (!match(":"))
+        if (!match(Token.Kind.COLON))
             throw new ParseException("Expected ':' after identifier", tokens.has(0) ? tokens.get(0).getIndex() : -1);
         Token typeToken = tokens.get(0);
         if (!match(Token.Type.IDENTIFIER))
             throw new ParseException("Expected type name", tokens.has(0) ? tokens.get(0).getIndex() : -1);
-        if (!match("="))
+        if (!match(Token.Kind.ASSIGN))
             throw new ParseException("Expected '=' after type name", tokens.has(0) ? tokens.get(0).getIndex() : -1);
-        if (!match("["))
+        if (!match(Token.Kind.LEFT_BRACKET))
             throw new ParseException("Expected '[' to start list", tokens.has(0) ? tokens.get(0).getIndex() : -1);
         List<Ast.Expression> expressions = new ArrayList<>();
-        while (!peek("]")) {
+        while (!peek(Token.Kind.RIGHT_BRACKET)) {
             expressions.add(parseExpression());
-            if (peek(","))
-                match(",");
-            else if (!peek("]"))
+            if (peek(Token.Kind.COMMA))
+                match(Token.Kind.COMMA);
+            else if (!peek(Token.Kind.RIGHT_BRACKET))
                 throw new ParseException("Expected ',' or ']' in list", tokens.has(0) ? tokens.get(0).getIndex() : -1);
         }
-        if (!match("]"))
+        if (!match(Token.Kind.RIGHT_BRACKET))
             throw new ParseException("Expected ']' to end list", tokens.has(0) ? tokens.get(0).getIndex() : -1);
-        if (!match(";"))
+        if (!match(Token.Kind.SEMICOLON))
             throw new ParseException("Expected ';' after list declaration", tokens.has(0) ? tokens.get(0).getIndex() : -1);
         return new Ast.Global(nameToken.getLiteral(), typeToken.getLiteral(), true, Optional.of(new Ast.Expression.PlcList(expressions)));
     } //TODO
@@ -105,7 +318,7 @@ public final class Parser {
             tokens.index--;
             throw new ParseException("Expected 'VAR'", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
         }
-        if (!match("VAR"))
+        if (!match(Token.Kind.VAR))
             throw new ParseException("Expected 'VAR'", tokens.get(0).getIndex());
 
         String name = tokens.get(0).getLiteral();
@@ -120,7 +333,7 @@ public final class Parser {
             tokens.index--;
             throw new ParseException("Expected ':' after identifierr", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
         }
-        if (!match(":")) {
+        if (!match(Token.Kind.COLON)) {
             throw new ParseException("Expected ':' after identifier", tokens.get(0).getIndex());
         }
 
@@ -133,7 +346,7 @@ public final class Parser {
             throw new ParseException("Expected type name after ':'", tokens.get(0).getIndex());
 
         Optional<Ast.Expression> value = Optional.empty();
-        if (match("=")) {
+        if (match(Token.Kind.ASSIGN)) {
             value = Optional.of(parseExpression());
         }
 
@@ -141,7 +354,7 @@ public final class Parser {
             tokens.index--;
             throw new ParseException("Expected ';' after global variable declaratio", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
         }
-        if (!match(";")) {
+        if (!match(Token.Kind.SEMICOLON)) {
             throw new ParseException("Expected ';' after global variable declaration", tokens.get(0).getIndex());
         }
 
@@ -157,7 +370,7 @@ public final class Parser {
             tokens.index--;
             throw new ParseException("Expected 'VAL'", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
         }
-        if (!match("VAL"))
+        if (!match(Token.Kind.VAL))
             throw new ParseException("Expected 'VAL'", tokens.get(0).getIndex());
 
         String name = tokens.get(0).getLiteral();
@@ -172,7 +385,7 @@ public final class Parser {
             tokens.index--;
             throw new ParseException("Expected ':' after identifier", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
         }
-        if (!match(":"))
+        if (!match(Token.Kind.COLON))
             throw new ParseException("Expected ':' after identifier", tokens.get(0).getIndex());
 
         String typeName = tokens.get(0).getLiteral();
@@ -187,7 +400,7 @@ public final class Parser {
             tokens.index--;
             throw new ParseException("Expected '='", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
         }
-        if (!match("="))
+        if (!match(Token.Kind.ASSIGN))
             throw new ParseException("Expected '='", tokens.get(0).getIndex());
 
         Ast.Expression value = parseExpression();
@@ -195,7 +408,7 @@ public final class Parser {
             tokens.index--;
             throw new ParseException("Expected ';' at the end of the declaration", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
         }
-        if (!match(";"))
+        if (!match(Token.Kind.SEMICOLON))
             throw new ParseException("Expected ';' at the end of the declaration", tokens.get(0).getIndex());
         return new Ast.Global(name, typeName, false, Optional.of(value));
     } //TODO
@@ -209,7 +422,7 @@ public final class Parser {
             tokens.index--;
             throw new ParseException("Expected 'FUN'", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
         }
-        if (!match("FUN"))
+        if (!match(Token.Kind.FUN))
             throw new ParseException("Expected 'FUN'", tokens.get(0).getIndex());
 
         String name = tokens.get(0).getLiteral();
@@ -224,12 +437,12 @@ public final class Parser {
             tokens.index--;
             throw new ParseException("Expected '('", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
         }
-        if (!match("("))
+        if (!match(Token.Kind.LEFT_PAREN))
             throw new ParseException("Expected '('", tokens.get(0).getIndex());
 
         List<String> parameters = new ArrayList<>();
         List<String> parameterTypes = new ArrayList<>();
-        while (!peek(")")) {
+        while (!peek(Token.Kind.RIGHT_PAREN)) {
             Token paramToken = tokens.get(0);
             if(!tokens.has(0)) {
                 tokens.index--;
@@ -243,7 +456,7 @@ public final class Parser {
                 tokens.index--;
                 throw new ParseException("Expected ':' after parameter", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
             }
-            if (!match(":"))
+            if (!match(Token.Kind.COLON))
                 throw new ParseException("Expected ':' after parameter", tokens.get(0).getIndex());
 
             Token paramType = tokens.get(0);
@@ -255,12 +468,12 @@ public final class Parser {
                 throw new ParseException("Expected identifier", tokens.get(0).getIndex());
             parameterTypes.add(paramType.getLiteral());
 
-            if (!peek(")")) {
+            if (!peek(Token.Kind.RIGHT_PAREN)) {
                 if(!tokens.has(0)) {
                     tokens.index--;
                     throw new ParseException("Expected ',' between parameters", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
                 }
-                if (!match(","))
+                if (!match(Token.Kind.COMMA))
                     throw new ParseException("Expected ',' between parameters", tokens.get(0).getIndex());
             }
         }
@@ -268,20 +481,20 @@ public final class Parser {
             tokens.index--;
             throw new ParseException("Expected ')' after parameters", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
         }
-        if (!match(")"))
+        if (!match(Token.Kind.RIGHT_PAREN))
             throw new ParseException("Expected ')' after parameters", tokens.get(0).getIndex());
 
         Optional<String> returnType = Optional.empty();
-        if (match(":")) {
+        if (match(Token.Kind.COLON)) {
             if (!tokens.has(0) || tokens.get(0).getType() != Token.Type.IDENTIFIER)
                 throw new ParseException("Expected return type identifier", tokens.has(0) ? tokens.get(0).getIndex() : tokens.index);
             returnType = Optional.of(tokens.get(0).getLiteral());
             tokens.advance();
         }
-        if (!match("DO"))
+        if (!match(Token.Kind.DO))
             throw new ParseException("Expected 'DO'", tokens.get(0).getIndex());
         List<Ast.Statement> statements = parseBlock();
-        if (!match("END"))
+        if (!match(Token.Kind.END))
             throw new ParseException("Expected 'END' after function body", tokens.get(0).getIndex());
         return new Ast.Function(name, parameters, parameterTypes, returnType, statements);
     } //TODO
@@ -291,8 +504,11 @@ public final class Parser {
      * preceding token indicates the opening a block of statements.
      */
     public List<Ast.Statement> parseBlock() throws ParseException {
+        if (iterative) {
+            return parseBlockIteratively();
+        }
         List<Ast.Statement> statements = new java.util.ArrayList<>();
-        while (!peek("END") && !peek("CASE") && !peek("DEFAULT") && !peek("ELSE")) {
+        while (!peek(Token.Kind.END) && !peek(Token.Kind.CASE) && !peek(Token.Kind.DEFAULT) && !peek(Token.Kind.ELSE)) {
             statements.add(parseStatement());
             if(!tokens.has(0)) {
                 tokens.index--;
@@ -308,15 +524,15 @@ public final class Parser {
      * statement, then it is an expression/assignment statement.
      */
     public Ast.Statement parseStatement() throws ParseException {
-        if (peek("LET")) {
+        if (peek(Token.Kind.LET)) {
             return parseDeclarationStatement();
-        } else if (peek("IF")) {
+        } else if (peek(Token.Kind.IF)) {
             return parseIfStatement();
-        } else if (peek("SWITCH")) {
+        } else if (peek(Token.Kind.SWITCH)) {
             return parseSwitchStatement();
-        } else if (peek("WHILE")) {
+        } else if (peek(Token.Kind.WHILE)) {
             return parseWhileStatement();
-        } else if (peek("RETURN")) {
+        } else if (peek(Token.Kind.RETURN)) {
             return parseReturnStatement();
         } else {
             // Directly parsing expression or assignment statement
@@ -325,13 +541,13 @@ public final class Parser {
                 tokens.index--;
                 throw new ParseException("Missing", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
             }
-            if (match("=")) {
+            if (match(Token.Kind.ASSIGN)) {
                 Ast.Expression value = parseExpression();
                 if(!tokens.has(0)) {
                     tokens.index--;
                     throw new ParseException("Expected ';'", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
                 }
-                if (!match(";"))
+                if (!match(Token.Kind.SEMICOLON))
                     throw new ParseException("Expected ';'", tokens.get(0).getIndex());
 
                 return new Ast.Statement.Assignment(expression, value);
@@ -341,7 +557,7 @@ public final class Parser {
                     tokens.index--;
                     throw new ParseException("Expected ';'", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
                 }
-                if (!match(";"))
+                if (!match(Token.Kind.SEMICOLON))
                     throw new ParseException("Expected ';'", tokens.get(0).getIndex());
                 return new Ast.Statement.Expression(expression);
             }
@@ -354,7 +570,7 @@ public final class Parser {
      * statement, aka {@code LET}.
      */
     public Ast.Statement.Declaration parseDeclarationStatement() throws ParseException {
-        if (!match("LET")) {
+        if (!match(Token.Kind.LET)) {
             throw new ParseException("Expected 'LET'", tokens.has(0) ? tokens.get(0).getIndex() : 0);
         }
         if (!tokens.has(0) || tokens.get(0).getType() != Token.Type.IDENTIFIER) {
@@ -363,7 +579,7 @@ public final class Parser {
         Token nameToken = tokens.get(0);
         tokens.advance();
         Optional<String> typeName = Optional.empty();
-        if (match(":")) {
+        if (match(Token.Kind.COLON)) {
             if (!tokens.has(0) || tokens.get(0).getType() != Token.Type.IDENTIFIER) {
                 throw new ParseException("Expected type name after ':'", tokens.has(0) ? tokens.get(0).getIndex() : tokens.index);
             }
@@ -372,10 +588,10 @@ public final class Parser {
             tokens.advance();
         }
         Optional<Ast.Expression> initializer = Optional.empty();
-        if (match("=")) {
+        if (match(Token.Kind.ASSIGN)) {
             initializer = Optional.of(parseExpression());
         }
-        if (!match(";")) {
+        if (!match(Token.Kind.SEMICOLON)) {
             throw new ParseException("Expected ';' after declaration", tokens.has(0) ? tokens.get(0).getIndex() : tokens.index);
         }
         return new Ast.Statement.Declaration(nameToken.getLiteral(), typeName, initializer);
@@ -387,18 +603,18 @@ public final class Parser {
      * {@code IF}.
      */
     public Ast.Statement.If parseIfStatement() throws ParseException {
-        if (!match("IF"))
+        if (!match(Token.Kind.IF))
             throw new ParseException("Expected 'IF'", tokens.has(0) ? tokens.get(0).getIndex() : 0);
         Ast.Expression condition = parseExpression();
-        if (!tokens.has(0) || !match("DO")) {
+        if (!tokens.has(0) || !match(Token.Kind.DO)) {
             throw new ParseException("Missing 'DO' keyword", tokens.has(0) ? tokens.get(0).getIndex() : tokens.index);
         }
         List<Ast.Statement> thenBlock = parseBlock();
         List<Ast.Statement> elseBlock = new ArrayList<>();
-        if (match("ELSE")) {
+        if (match(Token.Kind.ELSE)) {
             elseBlock = parseBlock();
         }
-        if (!tokens.has(0) || !match("END")) {
+        if (!tokens.has(0) || !match(Token.Kind.END)) {
             throw new ParseException("Expected 'END'", tokens.has(0) ? tokens.get(0).getIndex() : tokens.index);
         }
         return new Ast.Statement.If(condition, thenBlock, elseBlock);
@@ -410,7 +626,7 @@ public final class Parser {
      * {@code SWITCH}.
      */
     public Ast.Statement.Switch parseSwitchStatement() throws ParseException {
-        if (!match("SWITCH")) {
+        if (!match(Token.Kind.SWITCH)) {
             throw new ParseException("Expected 'SWITCH'", tokens.get(0).getIndex());
         }
 
@@ -418,15 +634,15 @@ public final class Parser {
         List<Ast.Statement.Case> cases = new ArrayList<>();
         boolean foundDefault = false;
 
-        while (tokens.has(0) && !peek("END")) {
-            if (match("CASE")) {
+        while (tokens.has(0) && !peek(Token.Kind.END)) {
+            if (match(Token.Kind.CASE)) {
                 Ast.Expression caseExpression = parseExpression();
-                if (!match(":")) {
+                if (!match(Token.Kind.COLON)) {
                     throw new ParseException("Expected ':' after CASE expression", tokens.get(0).getIndex());
                 }
                 List<Ast.Statement> caseStatements = parseBlock();
                 cases.add(new Ast.Statement.Case(Optional.of(caseExpression), caseStatements));
-            } else if (match("DEFAULT")) {
+            } else if (match(Token.Kind.DEFAULT)) {
                 if (foundDefault) {
                     throw new ParseException("Duplicate 'DEFAULT' case", tokens.get(0).getIndex());
                 }
@@ -442,7 +658,7 @@ public final class Parser {
             throw new ParseException("Expected 'DEFAULT' case", tokens.get(0).getIndex());
         }
 
-        if (!match("END")) {
+        if (!match(Token.Kind.END)) {
             throw new ParseException("Expected 'END' after SWITCH statement", tokens.get(0).getIndex());
         }
 
@@ -459,10 +675,10 @@ public final class Parser {
             tokens.index--;
             throw new ParseException("Missing", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
         }
-        if (!match("CASE"))
+        if (!match(Token.Kind.CASE))
             throw new ParseException("Expected 'CASE'", tokens.get(0).getIndex());
         Ast.Expression value = parseExpression();
-        if (!match(":"))
+        if (!match(Token.Kind.COLON))
             throw new ParseException("Expected ':'", tokens.get(0).getIndex());
         List<Ast.Statement> statements = parseBlock();
         return new Ast.Statement.Case(Optional.of(value), statements);
@@ -478,13 +694,13 @@ public final class Parser {
             tokens.index--;
             throw new ParseException("Missing", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
         }
-        if (!match("WHILE"))
+        if (!match(Token.Kind.WHILE))
             throw new ParseException("Expected 'WHILE'", tokens.get(0).getIndex());
         Ast.Expression condition = parseExpression();  // Parse the condition for the while loop.
-        if (!match("DO"))
+        if (!match(Token.Kind.DO))
             throw new ParseException("Expected 'DO'", tokens.get(0).getIndex());
         List<Ast.Statement> statements = parseBlock();  // Parse the block of statements to execute.
-        if (!match("END"))
+        if (!match(Token.Kind.END))
             throw new ParseException("Expected 'END'", tokens.get(0).getIndex());
 
         return new Ast.Statement.While(condition, statements);
@@ -499,11 +715,11 @@ public final class Parser {
         if (!tokens.has(0)) {
             throw new ParseException("Missing expression after 'RETURN'", tokens.index);
         }
-        if (!match("RETURN")) {
+        if (!match(Token.Kind.RETURN)) {
             throw new ParseException("Expected 'RETURN'", tokens.get(0).getIndex());
         }
         Ast.Expression value = parseExpression();
-        if (!match(";")) {
+        if (!match(Token.Kind.SEMICOLON)) {
             throw new ParseException("Missing ';'", tokens.index);
         }
         return new Ast.Statement.Return(value);
@@ -513,80 +729,67 @@ public final class Parser {
      * Parses the {@code expression} rule.
      */
     public Ast.Expression parseExpression() throws ParseException {
-        return parseLogicalExpression();
+        return parseBinaryExpression(LOGICAL);
     } //TODO
 
     /**
      * Parses the {@code logical-expression} rule.
      */
     public Ast.Expression parseLogicalExpression() throws ParseException {
-        Ast.Expression expression = parseComparisonExpression();
-        while (peek("&&") || peek("||")) {
-            String operator = tokens.get(0).getLiteral();
-            tokens.advance(); // Consume the operator
-            if(!tokens.has(0)) {
-                tokens.index--;
-                throw new ParseException("Missing Operand", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
-            }
-            Ast.Expression right = parseComparisonExpression();
-            expression = new Ast.Expression.Binary(operator, expression, right);
-        }
-        return expression;
+        return parseBinaryExpression(LOGICAL);
     } //TODO
 
     /**
      * Parses the {@code comparison-expression} rule.
      */
     public Ast.Expression parseComparisonExpression() throws ParseException {
-        Ast.Expression expression = parseAdditiveExpression();
-        while (peek("<") || peek(">") || peek("==") || peek("!=")) {
-            String operator = tokens.get(0).getLiteral();
-            tokens.advance(); // Consume the operator
-            if(!tokens.has(0)) {
-                tokens.index--;
-                throw new ParseException("Missing Operand", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
-            }
-            Ast.Expression right = parseAdditiveExpression();
-            expression = new Ast.Expression.Binary(operator, expression, right);
-        }
-        return expression;
+        return parseBinaryExpression(COMPARISON);
     } //TODO
 
     /**
      * Parses the {@code additive-expression} rule.
      */
     public Ast.Expression parseAdditiveExpression() throws ParseException {
-        Ast.Expression expression = parseMultiplicativeExpression();
-        while (peek("+") || peek("-")) {
-            String operator = tokens.get(0).getLiteral();
-            tokens.advance(); // Consume the operator
-            if(!tokens.has(0)) {
-                tokens.index--;
-                throw new ParseException("Missing Operand", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
-            }
-            Ast.Expression right = parseMultiplicativeExpression();
-            expression = new Ast.Expression.Binary(operator, expression, right);
-        }
-        return expression;
+        return parseBinaryExpression(ADDITIVE);
     } //TODO
 
     /**
      * Parses the {@code multiplicative-expression} rule.
      */
     public Ast.Expression parseMultiplicativeExpression() throws ParseException {
+        return parseBinaryExpression(MULTIPLICATIVE);
+    } //TODO
+
+    /**
+     * Parses a sequence of primary expressions joined by binary operators of
+     * at least the given precedence, using precedence climbing: operators are
+     * looked up by kind in {@link #PRECEDENCE}, and the right operand of each
+     * operator only takes operators of a higher precedence, so all operators
+     * are left associative. This builds the same trees as one recursive rule
+     * per precedence level, without passing through every level for each
+     * primary expression.
+     */
+    private Ast.Expression parseBinaryExpression(int minimum) throws ParseException {
+        if (iterative) {
+            return parseExpressionIteratively(minimum);
+        }
         Ast.Expression expression = parsePrimaryExpression();
-        while (peek("*") || peek("/") || peek("^")) {
-            String operator = tokens.get(0).getLiteral();
+        while (tokens.has(0)) {
+            Token.Kind kind = tokens.kind(0);
+            int precedence = PRECEDENCE[kind.ordinal()];
+            if (precedence < minimum) {
+                break;
+            }
             tokens.advance(); // Consume the operator
             if(!tokens.has(0)) {
                 tokens.index--;
                 throw new ParseException("Missing Operand", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
             }
-            Ast.Expression right = parsePrimaryExpression();
-            expression = new Ast.Expression.Binary(operator, expression, right);
+            Ast.Expression right = parseBinaryExpression(precedence + 1);
+            expression = new Ast.Expression.Binary(kind.getLiteral(), expression, right);
         }
         return expression;
-    } //TODO
+    }
 
     /**
      * Parses the {@code primary-expression} rule. This is the top-level rule
@@ -595,63 +798,21 @@ public final class Parser {
      * not strictly necessary.
      */
     public Ast.Expression parsePrimaryExpression() throws ParseException {
-        if (peek("NIL")) {
-            tokens.advance();
-            return new Ast.Expression.Literal(null);
+        if (iterative) {
+            return parseExpressionIteratively(0);
         }
-        else if (peek("TRUE") || peek("FALSE")) {
-            Token token = tokens.get(0);
-            tokens.advance();
-            return new Ast.Expression.Literal(Boolean.parseBoolean(token.getLiteral()));
+        Ast.Expression literal = parseLiteral();
+        if (literal != null) {
+            return literal;
         }
-        else if (peek(Token.Type.INTEGER)) {
-            Token token = tokens.get(0);
-            tokens.advance();
-            return new Ast.Expression.Literal(new BigInteger(token.getLiteral()));
-        }
-        else if (peek(Token.Type.DECIMAL)) {
-            Token token = tokens.get(0);
-            tokens.advance();
-            return new Ast.Expression.Literal(new BigDecimal(token.getLiteral()));
-        }
-        else if (peek(Token.Type.CHARACTER)) {
-            Token token = tokens.get(0);
-            String literalString = token.getLiteral().substring(1,token.getLiteral().length()-1);
-            String convertedString = literalString
-                    .replace("\\n", "\n")
-                    .replace("\\t", "\t")
-                    .replace("\\b", "\b")
-                    .replace("\\r", "\r")
-                    .replace("\\f", "\f")
-                    .replace("\\'", "'")
-                    .replace("\\\"", "\"")
-                    .replace("\\\\", "\\");
-            tokens.advance();
-            return new Ast.Expression.Literal(convertedString.charAt(0)); // Assuming character is single-quoted
-        }
-        else if (peek(Token.Type.STRING)) {
-            Token token = tokens.get(0);
-            String literalString = token.getLiteral().substring(1,token.getLiteral().length()-1);
-            String convertedString = literalString
-                    .replace("\\n", "\n")
-                    .replace("\\t", "\t")
-                    .replace("\\b", "\b")
-                    .replace("\\r", "\r")
-                    .replace("\\f", "\f")
-                    .replace("\\'", "'")
-                    .replace("\\\"", "\"")
-                    .replace("\\\\", "\\");
-            tokens.advance();
-            return new Ast.Expression.Literal(convertedString); // Assuming string is double-quoted
-        }
-        else if (peek("(")) {
+        else if (peek(Token.Kind.LEFT_PAREN)) {
             tokens.advance();
             Ast.Expression expression = parseExpression();
             if(!tokens.has(0)) {
                 tokens.index--;
                 throw new ParseException("Missing ',' or ')'", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
             }
-            if (!match(")"))
+            if (!match(Token.Kind.RIGHT_PAREN))
                 throw new ParseException("Expected ',' or ')'", tokens.get(0).getIndex());
             tokens.advance();
             return new Ast.Expression.Group(expression);
@@ -660,39 +821,34 @@ public final class Parser {
          else if (peek(Token.Type.IDENTIFIER)) {
             Token token = tokens.get(0);
             tokens.advance();
-            if (match("(")) {
+            if (match(Token.Kind.LEFT_PAREN)) {
                 List<Ast.Expression> arguments = new java.util.ArrayList<Ast.Expression>();
-                while (!peek(")")) {
+                while (!peek(Token.Kind.RIGHT_PAREN)) {
                     if(!tokens.has(0)) {
                         tokens.index--;
                         throw new ParseException("Missing ')'", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
                     }
                     arguments.add(parseExpression());
-                    if (!peek(")")) {
-                        if (!match(","))
-                            throw new ParseException("Expected ',' or ')'", tokens.get(0).getIndex());
-                        else
-                        {
-                            if(peek(")"))
-                                throw new ParseException("Wrong", tokens.get(0).getIndex());
-                        }
-                    }
-                    else
+                    if (peek(Token.Kind.RIGHT_PAREN))
                         break;
+                    else if (peek(Token.Kind.COMMA, Token.Kind.RIGHT_PAREN))
+                        throw new ParseException("Wrong", tokens.get(1).getIndex());
+                    else if (!match(Token.Kind.COMMA))
+                        throw new ParseException("Expected ',' or ')'", tokens.get(0).getIndex());
                 }
                 tokens.advance();
                 return new Ast.Expression.Function(token.getLiteral(),arguments);
             }
-            else if (match("[")) {
+            else if (match(Token.Kind.LEFT_BRACKET)) {
                 Ast.Expression arguments ;
-                while (!peek("]")) {
+                while (!peek(Token.Kind.RIGHT_BRACKET)) {
                     if(!tokens.has(0)) {
                         tokens.index--;
                         throw new ParseException("Missing ']'", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
                     }
                     arguments = parseExpression();
-                    if (!peek("]")) {
-                        if (!peek(","))
+                    if (!peek(Token.Kind.RIGHT_BRACKET)) {
+                        if (!peek(Token.Kind.COMMA))
                             throw new ParseException("Expected ',' or ']'", tokens.get(0).getIndex());
                     }
                     else {
@@ -710,6 +866,399 @@ public final class Parser {
     }
  //TODO
 
+    /**
+     * Parses a literal of the {@code primary-expression} rule, or returns
+     * {@code null} if the next token does not start a literal.
+     */
+    private Ast.Expression parseLiteral() {
+        if (peek(Token.Kind.NIL)) {
+            tokens.advance();
+            return new Ast.Expression.Literal(null);
+        }
+        else if (peek(Token.Kind.TRUE) || peek(Token.Kind.FALSE)) {
+            Token token = tokens.get(0);
+            tokens.advance();
+            return new Ast.Expression.Literal(Boolean.parseBoolean(token.getLiteral()));
+        }
+        else if (peek(Token.Type.INTEGER)) {
+            Token token = tokens.get(0);
+            tokens.advance();
+            if (token.hasLongValue()) {
+                return new Ast.Expression.Literal(BigInteger.valueOf(token.getLongValue()));
+            } else if (token.hasValue()) {
+                return new Ast.Expression.Literal(token.getValue());
+            }
+            return new Ast.Expression.Literal(new BigInteger(token.getLiteral()));
+        }
+        else if (peek(Token.Type.DECIMAL)) {
+            Token token = tokens.get(0);
+            tokens.advance();
+            if (token.hasValue()) {
+                return new Ast.Expression.Literal(token.getValue());
+            }
+            return new Ast.Expression.Literal(new BigDecimal(token.getLiteral()));
+        }
+        else if (peek(Token.Type.CHARACTER)) {
+            Token token = tokens.get(0);
+            if (token.hasValue()) {
+                tokens.advance();
+                return new Ast.Expression.Literal(token.getValue());
+            }
+            String literal = token.getLiteral();
+            tokens.advance();
+            return new Ast.Expression.Literal(Scanner.unescape(literal.substring(1, literal.length() - 1)).charAt(0));
+        }
+        else if (peek(Token.Type.STRING)) {
+            Token token = tokens.get(0);
+            if (token.hasValue()) {
+                tokens.advance();
+                return new Ast.Expression.Literal(token.getValue());
+            }
+            String literal = token.getLiteral();
+            tokens.advance();
+            return new Ast.Expression.Literal(Scanner.unescape(literal.substring(1, literal.length() - 1)));
+        }
+        return null;
+    }
+
+    /**
+     * Parses binary expressions of at least the given precedence like {@link
+     * #parseBinaryExpression(int)}, or a primary expression if the precedence
+     * is 0, without recursion (see {@link Option#ITERATIVE}).
+     *
+     * Each rule which would recurse into an expression pushes a frame with its
+     * progress and starts a new operand instead. When an expression is
+     * complete, the frame on top resumes with it, and either starts another
+     * operand or completes its own expression. The checks (and errors) in each
+     * frame are the same, and in the same order, as in the recursive rules.
+     */
+    private Ast.Expression parseExpressionIteratively(int minimum) throws ParseException {
+        Deque<Object> frames = new ArrayDeque<>();
+        if (minimum > 0) {
+            frames.push(new BinaryFrame(minimum));
+        }
+        Ast.Expression expression = null;
+        while (true) {
+            if (expression == null) {
+                expression = startPrimary(frames);
+            } else if (frames.isEmpty()) {
+                return expression;
+            } else if (frames.peek() instanceof BinaryFrame) {
+                BinaryFrame frame = (BinaryFrame) frames.peek();
+                frame.left = frame.operator == null ? expression : new Ast.Expression.Binary(frame.operator.getLiteral(), frame.left, expression);
+                expression = resumeBinary(frame, frames);
+            } else if (frames.peek() instanceof CallFrame) {
+                CallFrame frame = (CallFrame) frames.peek();
+                frame.arguments.add(expression);
+                if (peek(Token.Kind.RIGHT_PAREN)) {
+                    expression = resumeCall(frame, frames);
+                } else if (peek(Token.Kind.COMMA, Token.Kind.RIGHT_PAREN)) {
+                    throw new ParseException("Wrong", tokens.get(1).getIndex());
+                } else if (!match(Token.Kind.COMMA)) {
+                    throw new ParseException("Expected ',' or ')'", tokens.get(0).getIndex());
+                } else {
+                    expression = resumeCall(frame, frames);
+                }
+            } else if (frames.peek() instanceof AccessFrame) {
+                AccessFrame frame = (AccessFrame) frames.peek();
+                if (!peek(Token.Kind.RIGHT_BRACKET)) {
+                    if (!peek(Token.Kind.COMMA))
+                        throw new ParseException("Expected ',' or ']'", tokens.get(0).getIndex());
+                    expression = resumeAccess(frames);
+                } else {
+                    tokens.advance();
+                    frames.pop();
+                    expression = new Ast.Expression.Access(Optional.of(expression), frame.name);
+                }
+            } else {
+                frames.pop();
+                if(!tokens.has(0)) {
+                    tokens.index--;
+                    throw new ParseException("Missing ',' or ')'", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
+                }
+                if (!match(Token.Kind.RIGHT_PAREN))
+                    throw new ParseException("Expected ',' or ')'", tokens.get(0).getIndex());
+                tokens.advance();
+                expression = new Ast.Expression.Group(expression);
+            }
+        }
+    }
+
+    /**
+     * Starts a primary expression, returning it if it is complete or pushing
+     * the frames of a group, call or access and returning {@code null} to
+     * start its first operand.
+     */
+    private Ast.Expression startPrimary(Deque<Object> frames) throws ParseException {
+        Ast.Expression literal = parseLiteral();
+        if (literal != null) {
+            return literal;
+        } else if (peek(Token.Kind.LEFT_PAREN)) {
+            tokens.advance();
+            frames.push(GROUP);
+            frames.push(new BinaryFrame(LOGICAL));
+            return null;
+        } else if (peek(Token.Type.IDENTIFIER)) {
+            Token token = tokens.get(0);
+            tokens.advance();
+            if (match(Token.Kind.LEFT_PAREN)) {
+                CallFrame frame = new CallFrame(token.getLiteral());
+                frames.push(frame);
+                return resumeCall(frame, frames);
+            } else if (match(Token.Kind.LEFT_BRACKET)) {
+                frames.push(new AccessFrame(token.getLiteral()));
+                return resumeAccess(frames);
+            } else {
+                return new Ast.Expression.Access(Optional.empty(), token.getLiteral());
+            }
+        }
+        throw new ParseException("Expected a primary expression", tokens.get(0).getIndex());
+    }
+
+    /**
+     * Continues a binary expression with its next operator, if it has one of
+     * at least the minimum precedence, by starting its right operand.
+     */
+    private Ast.Expression resumeBinary(BinaryFrame frame, Deque<Object> frames) throws ParseException {
+        if (tokens.has(0)) {
+            Token.Kind kind = tokens.kind(0);
+            int precedence = PRECEDENCE[kind.ordinal()];
+            if (precedence >= frame.minimum) {
+                tokens.advance(); // Consume the operator
+                if(!tokens.has(0)) {
+                    tokens.index--;
+                    throw new ParseException("Missing Operand", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
+                }
+                frame.operator = kind;
+                frames.push(new BinaryFrame(precedence + 1));
+                return null;
+            }
+        }
+        frames.pop();
+        return frame.left;
+    }
+
+    /**
+     * Continues the arguments of a function call at the head of its loop.
+     */
+    private Ast.Expression resumeCall(CallFrame frame, Deque<Object> frames) throws ParseException {
+        if (!peek(Token.Kind.RIGHT_PAREN)) {
+            if(!tokens.has(0)) {
+                tokens.index--;
+                throw new ParseException("Missing ')'", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
+            }
+            frames.push(new BinaryFrame(LOGICAL));
+            return null;
+        }
+        tokens.advance();
+        frames.pop();
+        return new Ast.Expression.Function(frame.name, frame.arguments);
+    }
+
+    /**
+     * Continues the offset of an access at the head of its loop, which (as in
+     * {@link #parsePrimaryExpression()}) is an error if the next token is a
+     * {@code ]}.
+     */
+    private Ast.Expression resumeAccess(Deque<Object> frames) throws ParseException {
+        if (!peek(Token.Kind.RIGHT_BRACKET)) {
+            if(!tokens.has(0)) {
+                tokens.index--;
+                throw new ParseException("Missing ']'", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
+            }
+            frames.push(new BinaryFrame(LOGICAL));
+            return null;
+        }
+        throw new ParseException("Expected a primary expression", tokens.get(0).getIndex());
+    }
+
+    /**
+     * Parses a block like {@link #parseBlock()} without recursion (see {@link
+     * Option#ITERATIVE}). As with expressions, if, switch and while statements
+     * push a frame and start their block, and resume when it is complete;
+     * other statements do not contain blocks and are parsed directly.
+     */
+    private List<Ast.Statement> parseBlockIteratively() throws ParseException {
+        Deque<Object> frames = new ArrayDeque<>();
+        frames.push(new BlockFrame());
+        Object result = null;
+        while (true) {
+            Object top = frames.peek();
+            if (top instanceof BlockFrame) {
+                BlockFrame frame = (BlockFrame) top;
+                if (result != null) {
+                    frame.statements.add((Ast.Statement) result);
+                    if(!tokens.has(0)) {
+                        tokens.index--;
+                        throw new ParseException("Expected 'END'", tokens.get(0).getIndex()+tokens.get(0).getLiteral().length());
+                    }
+                }
+                if (!peek(Token.Kind.END) && !peek(Token.Kind.CASE) && !peek(Token.Kind.DEFAULT) && !peek(Token.Kind.ELSE)) {
+                    result = startStatement(frames);
+                    continue;
+                }
+                frames.pop();
+                if (frames.isEmpty()) {
+                    return frame.statements;
+                }
+                result = frame.statements;
+            } else if (top instanceof IfFrame) {
+                IfFrame frame = (IfFrame) top;
+                @SuppressWarnings("unchecked")
+                List<Ast.Statement> block = (List<Ast.Statement>) result;
+                if (frame.thenStatements == null) {
+                    frame.thenStatements = block;
+                    if (match(Token.Kind.ELSE)) {
+                        frames.push(new BlockFrame());
+                        result = null;
+                        continue;
+                    }
+                    frame.elseStatements = new ArrayList<>();
+                } else {
+                    frame.elseStatements = block;
+                }
+                if (!tokens.has(0) || !match(Token.Kind.END)) {
+                    throw new ParseException("Expected 'END'", tokens.has(0) ? tokens.get(0).getIndex() : tokens.index);
+                }
+                frames.pop();
+                result = new Ast.Statement.If(frame.condition, frame.thenStatements, frame.elseStatements);
+            } else if (top instanceof WhileFrame) {
+                @SuppressWarnings("unchecked")
+                List<Ast.Statement> block = (List<Ast.Statement>) result;
+                if (!match(Token.Kind.END))
+                    throw new ParseException("Expected 'END'", tokens.get(0).getIndex());
+                frames.pop();
+                result = new Ast.Statement.While(((WhileFrame) top).condition, block);
+            } else {
+                SwitchFrame frame = (SwitchFrame) top;
+                if (result != null) {
+                    @SuppressWarnings("unchecked")
+                    List<Ast.Statement> block = (List<Ast.Statement>) result;
+                    frame.cases.add(new Ast.Statement.Case(frame.value, block));
+                    frame.foundDefault |= !frame.value.isPresent();
+                }
+                result = resumeSwitch(frame, frames);
+            }
+        }
+    }
+
+    /**
+     * Starts a statement, returning it if it is complete or pushing the frames
+     * of an if, switch or while statement and returning {@code null} to start
+     * its first block.
+     */
+    private Ast.Statement startStatement(Deque<Object> frames) throws ParseException {
+        if (peek(Token.Kind.IF)) {
+            if (!match(Token.Kind.IF))
+                throw new ParseException("Expected 'IF'", tokens.has(0) ? tokens.get(0).getIndex() : 0);
+            Ast.Expression condition = parseExpression();
+            if (!tokens.has(0) || !match(Token.Kind.DO)) {
+                throw new ParseException("Missing 'DO' keyword", tokens.has(0) ? tokens.get(0).getIndex() : tokens.index);
+            }
+            frames.push(new IfFrame(condition));
+            frames.push(new BlockFrame());
+            return null;
+        } else if (peek(Token.Kind.SWITCH)) {
+            if (!match(Token.Kind.SWITCH)) {
+                throw new ParseException("Expected 'SWITCH'", tokens.get(0).getIndex());
+            }
+            SwitchFrame frame = new SwitchFrame(parseExpression());
+            frames.push(frame);
+            return resumeSwitch(frame, frames);
+        } else if (peek(Token.Kind.WHILE)) {
+            if (!match(Token.Kind.WHILE))
+                throw new ParseException("Expected 'WHILE'", tokens.get(0).getIndex());
+            Ast.Expression condition = parseExpression();
+            if (!match(Token.Kind.DO))
+                throw new ParseException("Expected 'DO'", tokens.get(0).getIndex());
+            frames.push(new WhileFrame(condition));
+            frames.push(new BlockFrame());
+            return null;
+        }
+        return parseStatement();
+    }
+
+    /**
+     * Continues the cases of a switch statement at the head of its loop,
+     * starting the block of the next case or completing the statement.
+     */
+    private Ast.Statement resumeSwitch(SwitchFrame frame, Deque<Object> frames) throws ParseException {
+        if (tokens.has(0) && !peek(Token.Kind.END)) {
+            if (match(Token.Kind.CASE)) {
+                Ast.Expression caseExpression = parseExpression();
+                if (!match(Token.Kind.COLON)) {
+                    throw new ParseException("Expected ':' after CASE expression", tokens.get(0).getIndex());
+                }
+                frame.value = Optional.of(caseExpression);
+            } else if (match(Token.Kind.DEFAULT)) {
+                if (frame.foundDefault) {
+                    throw new ParseException("Duplicate 'DEFAULT' case", tokens.get(0).getIndex());
+                }
+                frame.value = Optional.empty();
+            } else {
+                throw new ParseException("Unexpected token in SWITCH statement", tokens.get(0).getIndex());
+            }
+            frames.push(new BlockFrame());
+            return null;
+        }
+
+        if (!frame.foundDefault) {
+            throw new ParseException("Expected 'DEFAULT' case", tokens.get(0).getIndex());
+        }
+
+        if (!match(Token.Kind.END)) {
+            throw new ParseException("Expected 'END' after SWITCH statement", tokens.get(0).getIndex());
+        }
+        frames.pop();
+        return new Ast.Statement.Switch(frame.condition, frame.cases);
+    }
+
+    /**
+     * Returns {@code true} if the next token has the given kind. This and the
+     * other overloads of {@link #peek(Object...)} and {@link
+     * #match(Object...)} compare precomputed kinds (or types) without creating
+     * a varargs array, and are used throughout the grammar.
+     */
+    private boolean peek(Token.Kind kind) {
+        return tokens.has(0) && tokens.kind(0) == kind;
+    }
+
+    private boolean peek(Token.Type type) {
+        return tokens.has(0) && tokens.type(0) == type;
+    }
+
+    /**
+     * Returns {@code true} if the next two tokens have the given kinds.
+     */
+    private boolean peek(Token.Kind first, Token.Kind second) {
+        return tokens.has(0) && tokens.kind(0) == first && tokens.has(1) && tokens.kind(1) == second;
+    }
+
+    private boolean match(Token.Kind kind) {
+        boolean peek = peek(kind);
+        if (peek) {
+            tokens.advance();
+        }
+        return peek;
+    }
+
+    private boolean match(Token.Type type) {
+        boolean peek = peek(type);
+        if (peek) {
+            tokens.advance();
+        }
+        return peek;
+    }
+
+    private boolean match(Token.Kind first, Token.Kind second) {
+        boolean peek = peek(first, second);
+        if (peek) {
+            tokens.advance();
+            tokens.advance();
+        }
+        return peek;
+    }
+
     /**
      * As in the lexer, returns {@code true} if the current sequence of tokens
      * matches the given patterns. Unlike the lexer, the pattern is not a regex;
@@ -719,6 +1268,9 @@ public final class Parser {
      *
      * In other words, {@code Token(IDENTIFIER, "literal")} is matched by both
      * {@code peek(Token.Type.IDENTIFIER)} and {@code peek("literal")}.
+     *
+     * A pattern may also be a {@link Token.Kind}, which matches keywords by
+     * identity, such as {@code peek(Token.Kind.FUN)}.
      */
     private boolean peek(Object... patterns) {
         for (int i = 0; i < patterns.length; i++) {
@@ -726,12 +1278,17 @@ public final class Parser {
                 return false;
             }
             else if (patterns[i] instanceof Token.Type) {
-                if (patterns[i] != tokens.get(i).getType()) {
+                if (patterns[i] != tokens.type(i)) {
+                    return false;
+                }
+            }
+            else if (patterns[i] instanceof Token.Kind) {
+                if (patterns[i] != tokens.kind(i)) {
                     return false;
                 }
             }
             else if (patterns[i] instanceof String) {
-                if (!patterns[i].equals(tokens.get(i).getLiteral())) {
+                if (!tokens.literalEquals(i, (String) patterns[i])) {
                     return false;
                 }
             }
@@ -756,28 +1313,108 @@ public final class Parser {
         return peek;
     } //TODO (in lecture)
 
-    private static final class TokenStream {
+    /**
+     * The frame of a group in {@link #parseExpressionIteratively(int)}, which
+     * only needs its closing parenthesis.
+     */
+    private static final Object GROUP = new Object();
 
-        private final List<Token> tokens;
-        private int index = 0;
+    private static final class BinaryFrame {
 
-        private TokenStream(List<Token> tokens) {
-            this.tokens = tokens;
+        private final int minimum;
+        private Ast.Expression left = null;
+        private Token.Kind operator = null;
+
+        private BinaryFrame(int minimum) {
+            this.minimum = minimum;
         }
+    }
+
+    private static final class CallFrame {
+
+        private final String name;
+        private final List<Ast.Expression> arguments = new ArrayList<>();
+
+        private CallFrame(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class AccessFrame {
+
+        private final String name;
+
+        private AccessFrame(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class BlockFrame {
+
+        private final List<Ast.Statement> statements = new ArrayList<>();
+    }
+
+    private static final class IfFrame {
+
+        private final Ast.Expression condition;
+        private List<Ast.Statement> thenStatements = null;
+        private List<Ast.Statement> elseStatements = null;
+
+        private IfFrame(Ast.Expression condition) {
+            this.condition = condition;
+        }
+    }
+
+    private static final class WhileFrame {
+
+        private final Ast.Expression condition;
+
+        private WhileFrame(Ast.Expression condition) {
+            this.condition = condition;
+        }
+    }
+
+    private static final class SwitchFrame {
+
+        private final Ast.Expression condition;
+        private final List<Ast.Statement.Case> cases = new ArrayList<>();
+        private boolean foundDefault = false;
+        private Optional<Ast.Expression> value = Optional.empty();
+
+        private SwitchFrame(Ast.Expression condition) {
+            this.condition = condition;
+        }
+    }
+
+    private abstract static class TokenStream {
+
+        int index = 0;
 
         /**
          * Returns true if there is a token at index + offset.
          */
-        public boolean has(int offset) {
-            return index + offset < tokens.size();
-        }
+        public abstract boolean has(int offset);
 
         /**
          * Gets the token at index + offset.
          */
-        public Token get(int offset) {
-            return tokens.get(index + offset);
-        }
+        public abstract Token get(int offset);
+
+        /**
+         * Gets the type of the token at index + offset.
+         */
+        public abstract Token.Type type(int offset);
+
+        /**
+         * Gets the kind of the token at index + offset.
+         */
+        public abstract Token.Kind kind(int offset);
+
+        /**
+         * Returns true if the literal of the token at index + offset is equal
+         * to the given string.
+         */
+        public abstract boolean literalEquals(int offset, String literal);
 
         /**
          * Advances to the next token, incrementing the index.
@@ -786,4 +1423,130 @@ public final class Parser {
             index++;
         }
     }
+
+    private static final class ListTokenStream extends TokenStream {
+
+        private final List<Token> tokens;
+
+        private ListTokenStream(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public boolean has(int offset) {
+            return index + offset < tokens.size();
+        }
+
+        @Override
+        public Token get(int offset) {
+            return tokens.get(index + offset);
+        }
+
+        @Override
+        public Token.Type type(int offset) {
+            return get(offset).getType();
+        }
+
+        @Override
+        public Token.Kind kind(int offset) {
+            return get(offset).getKind();
+        }
+
+        @Override
+        public boolean literalEquals(int offset, String literal) {
+            return get(offset).literalEquals(literal);
+        }
+    }
+
+    private static final class BufferTokenStream extends TokenStream {
+
+        private final TokenBuffer tokens;
+
+        private BufferTokenStream(TokenBuffer tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public boolean has(int offset) {
+            return index + offset < tokens.size();
+        }
+
+        @Override
+        public Token get(int offset) {
+            return tokens.get(index + offset);
+        }
+
+        @Override
+        public Token.Type type(int offset) {
+            return tokens.getType(index + offset);
+        }
+
+        @Override
+        public Token.Kind kind(int offset) {
+            return tokens.getKind(index + offset);
+        }
+
+        @Override
+        public boolean literalEquals(int offset, String literal) {
+            return tokens.literalEquals(index + offset, literal);
+        }
+    }
+
+    /**
+     * Reads tokens from a {@link TokenPipe} as they are needed, waiting for
+     * the lexer if necessary. Tokens taken from the pipe are kept, since the
+     * parser may move back to previous tokens.
+     */
+    private static final class PipeTokenStream extends TokenStream {
+
+        private final TokenPipe pipe;
+        private final List<Token> tokens = new ArrayList<>();
+        private boolean complete = false;
+
+        private PipeTokenStream(TokenPipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override
+        public boolean has(int offset) {
+            return fill(index + offset);
+        }
+
+        @Override
+        public Token get(int offset) {
+            fill(index + offset);
+            return tokens.get(index + offset);
+        }
+
+        @Override
+        public Token.Type type(int offset) {
+            return get(offset).getType();
+        }
+
+        @Override
+        public Token.Kind kind(int offset) {
+            return get(offset).getKind();
+        }
+
+        @Override
+        public boolean literalEquals(int offset, String literal) {
+            return get(offset).literalEquals(literal);
+        }
+
+        /**
+         * Takes tokens from the pipe until the given index is available,
+         * returning false if the tokens end before it.
+         */
+        private boolean fill(int index) {
+            while (tokens.size() <= index && !complete) {
+                Token token = pipe.take();
+                if (token == null) {
+                    complete = true;
+                } else {
+                    tokens.add(token);
+                }
+            }
+            return index < tokens.size();
+        }
+    }
 }
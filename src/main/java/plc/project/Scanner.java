@@ -0,0 +1,617 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Set;
+
+/**
+ * A table-driven state machine implementing the same token rules as the
+ * pattern-based methods in {@link Lexer}. Every character is classified once
+ * through a precomputed table, so scanning performs no regex matching and
+ * allocates nothing per character.
+ *
+ * The scanner is stateless apart from the type of the last token scanned;
+ * callers drive it with {@link #skip(int)} and {@link #scan(int)} and build
+ * {@link Token}s from the returned offsets. With {@link
+ * Lexer.Option#DECODE_LITERALS}, the value of each literal is also decoded
+ * while it is scanned and attached to the token.
+ *
+ * When the input is a {@link ByteSource}, each character is a byte of UTF-8,
+ * and a multi-byte sequence is scanned as one character in character literals
+ * and operators, and decoded as one in literal values.
+ *
+ * The input may also be a window of a larger source which is not yet complete
+ * (see {@link StreamingLexer}). In that case, scanning a token which might
+ * continue past the window throws {@link #UNDERFLOW} so the caller can refill
+ * it and scan the token again.
+ */
+final class Scanner {
+
+    static final byte OTHER = 0;
+    static final byte SPACE = 1;
+    static final byte DIGIT = 2;
+    static final byte MINUS = 3;
+    static final byte LETTER = 4;
+    static final byte AT = 5;
+    static final byte QUOTE = 6;
+    static final byte DOUBLE_QUOTE = 7;
+
+    private static final int IDENTIFIER_PART = 1;
+    private static final int CHARACTER_ESCAPE = 2;
+    private static final int STRING_ESCAPE = 4;
+
+    /**
+     * The class of each ASCII character; everything outside ASCII is
+     * {@link #OTHER}, which is lexed as a single character operator.
+     */
+    private static final byte[] CLASSES = new byte[128];
+
+    /**
+     * Bit flags for the character sets used within tokens.
+     */
+    private static final byte[] FLAGS = new byte[128];
+
+    /**
+     * The literal of each single character ASCII operator, shared by all
+     * tokens. These are the same instances as the literals of {@link
+     * Token.Kind}, since both are interned.
+     */
+    private static final String[] OPERATORS = new String[128];
+
+    /**
+     * The most digits of a number which always fit in a {@code long}.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    static {
+        for (char c : " \t\n\u000B\f\r\b".toCharArray()) {
+            CLASSES[c] = SPACE;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CLASSES[c] = DIGIT;
+            FLAGS[c] |= IDENTIFIER_PART;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            CLASSES[c] = LETTER;
+            CLASSES[Character.toLowerCase(c)] = LETTER;
+            FLAGS[c] |= IDENTIFIER_PART;
+            FLAGS[Character.toLowerCase(c)] |= IDENTIFIER_PART;
+        }
+        CLASSES['-'] = MINUS;
+        CLASSES['@'] = AT;
+        CLASSES['\''] = QUOTE;
+        CLASSES['"'] = DOUBLE_QUOTE;
+        FLAGS['_'] |= IDENTIFIER_PART;
+        FLAGS['-'] |= IDENTIFIER_PART;
+        for (char c : "bnrt'\\".toCharArray()) {
+            FLAGS[c] |= CHARACTER_ESCAPE | STRING_ESCAPE;
+        }
+        FLAGS['"'] |= STRING_ESCAPE;
+        for (char c = 0; c < 128; c++) {
+            OPERATORS[c] = String.valueOf(c).intern();
+        }
+    }
+
+    /**
+     * Finds the ends of runs of characters with the Vector API, or is {@code
+     * null} if the {@code jdk.incubator.vector} module is not available.
+     */
+    static final Runs RUNS = loadRuns();
+
+    /**
+     * Thrown when a token may extend past the end of an incomplete window.
+     * This is a preallocated signal, not an error, and carries no stack trace.
+     */
+    static final RuntimeException UNDERFLOW = new RuntimeException("Scanner underflow", null, false, false) {};
+
+    private final CharSequence input;
+    private final ByteSource bytes;
+    private final SymbolTable symbols;
+    private final boolean decode;
+    private final boolean recover;
+    private final boolean views;
+    private final char[] chars;
+    private final StringBuilder builder;
+    private LineIndex lines = null;
+    private int end;
+    private boolean complete = true;
+    private int base = 0;
+    private Token.Type type;
+    private Object value;
+    private long number;
+    private int digits;
+
+    Scanner(CharSequence input) {
+        this(input, null, Set.of());
+    }
+
+    /**
+     * Creates a scanner which interns identifiers into the given symbol table
+     * when creating tokens, if it is not {@code null}.
+     */
+    Scanner(CharSequence input, SymbolTable symbols, Set<Lexer.Option> options) {
+        this(input, symbols, options, null);
+    }
+
+    /**
+     * Creates a scanner which, if {@code chars} is not {@code null}, skips runs
+     * with the Vector API over {@code chars}, a copy of the input which is
+     * shared by all scanners of the input (see {@link Lexer.Option#VECTORIZE}).
+     */
+    Scanner(CharSequence input, SymbolTable symbols, Set<Lexer.Option> options, char[] chars) {
+        this.input = input;
+        this.bytes = input instanceof ByteSource ? (ByteSource) input : null;
+        this.symbols = symbols;
+        this.decode = options.contains(Lexer.Option.DECODE_LITERALS);
+        this.builder = decode ? new StringBuilder() : null;
+        this.recover = options.contains(Lexer.Option.RECOVER);
+        this.views = options.contains(Lexer.Option.SOURCE_VIEWS) && input instanceof String;
+        this.chars = RUNS != null ? chars : null;
+        this.end = input.length();
+    }
+
+    /**
+     * Sets the window of the input to scan. Indices passed to and returned by
+     * the scanner are relative to the input, while {@link ParseException}
+     * indices are offset by {@code base}. If the window is not {@code complete}
+     * then more input may follow {@code end}.
+     */
+    void window(int end, boolean complete, int base) {
+        this.end = end;
+        this.complete = complete;
+        this.base = base;
+    }
+
+    /**
+     * Records the newlines skipped over by {@link #skip(int)} in the given line
+     * index (at their position in the whole source).
+     */
+    void lines(LineIndex lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Returns the class of the given character.
+     */
+    static byte classify(char c) {
+        return c < 128 ? CLASSES[c] : OTHER;
+    }
+
+    /**
+     * Returns the type of the token matched by the last call to {@link #scan(int)}.
+     */
+    Token.Type type() {
+        return type;
+    }
+
+    /**
+     * Creates the token spanning {@code [start, end)} matched by the last call
+     * to {@link #scan(int)}. Identifiers are interned into the symbol table,
+     * and other literals are taken with {@link CharSequence#subSequence(int, int)},
+     * or are {@link SourceView}s with {@link Lexer.Option#SOURCE_VIEWS}.
+     */
+    Token token(int start, int end) {
+        if (views && type != Token.Type.OPERATOR) {
+            return view(start, end);
+        } else if (type == Token.Type.IDENTIFIER && symbols != null) {
+            int slot = symbols.find(input, start, end);
+            return new Token(type, symbols.symbol(slot), base + start, symbols.kind(slot));
+        } else if (type == Token.Type.OPERATOR) {
+            return operator(input, start, end, base + start);
+        } else if (value != null) {
+            return new Token(type, input.subSequence(start, end), base + start, value, number);
+        }
+        return new Token(type, input.subSequence(start, end), base + start);
+    }
+
+    /**
+     * Creates a token whose literal is a view of the input. Keywords use the
+     * literal of their kind instead, and nothing else is allocated.
+     */
+    private Token view(int start, int end) {
+        if (type == Token.Type.IDENTIFIER) {
+            Token.Kind keyword = SymbolTable.keyword(input, start, end);
+            if (keyword != null) {
+                return new Token(type, keyword.getLiteral(), base + start, keyword);
+            }
+            return new Token(type, new SourceView((String) input, start, end), base + start, Token.Kind.IDENTIFIER);
+        }
+        CharSequence literal = new SourceView((String) input, start, end);
+        return value != null ? new Token(type, literal, base + start, value, number) : new Token(type, literal, base + start);
+    }
+
+    /**
+     * Creates the operator token spanning {@code [start, end)} of the input,
+     * at the given index in the source. ASCII operators use a shared literal
+     * instead of a new substring.
+     */
+    static Token operator(CharSequence input, int start, int end, int index) {
+        Token.Kind kind = Token.Kind.operator(input, start, end);
+        CharSequence literal = kind.getLiteral();
+        if (literal == null) {
+            char c = input.charAt(start);
+            literal = end - start == 1 && c < 128 ? OPERATORS[c] : input.subSequence(start, end);
+        }
+        return new Token(Token.Type.OPERATOR, literal, index, kind);
+    }
+
+    /**
+     * Returns the index of the first non-whitespace character at or after the
+     * given index, or the length of the input if there is none.
+     */
+    int skip(int index) {
+        if (chars != null) {
+            return RUNS.skipSpace(chars, index, end, lines, base);
+        }
+        while (index < end) {
+            char c = input.charAt(index);
+            if (classify(c) != SPACE) {
+                break;
+            } else if (c == '\n' && lines != null) {
+                lines.newline(base + index);
+            }
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Scans the token starting at the given index, which must be in bounds,
+     * and returns the index just past its end. Errors are reported with the
+     * same messages and indices as {@link Lexer#lexToken()}.
+     */
+    int scan(int index) {
+        value = null;
+        char c = input.charAt(index);
+        switch (classify(c)) {
+            case DIGIT:
+                return scanNumber(index);
+            case MINUS:
+                if (has(index + 1) && classify(input.charAt(index + 1)) == DIGIT) {
+                    return scanNumber(index);
+                }
+                return scanOperator(index);
+            case LETTER:
+            case AT:
+                return scanIdentifier(index);
+            case QUOTE:
+                return scanCharacter(index);
+            case DOUBLE_QUOTE:
+                return scanString(index);
+            case SPACE:
+                throw error("Unexpected character: " + c, index);
+            default:
+                return scanOperator(index);
+        }
+    }
+
+    /**
+     * Returns the index at which to resume scanning after the token starting at
+     * {@code start} failed with the given error. The rest of a malformed number
+     * or quoted literal is skipped, so it is only reported once; otherwise
+     * scanning resumes at the error.
+     */
+    int recover(int start, ParseException error) {
+        int index = Math.min(Math.max(error.getIndex() - base, start + 1), end);
+        switch (classify(input.charAt(start))) {
+            case DIGIT:
+            case MINUS:
+                while (index < end && (isDigit(input.charAt(index)) || input.charAt(index) == '.')) {
+                    index++;
+                }
+                return index;
+            case QUOTE:
+                return skipQuoted(index, '\'');
+            case DOUBLE_QUOTE:
+                return skipQuoted(index, '"');
+            default:
+                return index;
+        }
+    }
+
+    /**
+     * Returns the index past the closing quote of a literal, or of the end of
+     * the line if it is not closed on the same line.
+     */
+    private int skipQuoted(int index, char quote) {
+        while (index < end) {
+            char c = input.charAt(index);
+            if (c == quote) {
+                return index + 1;
+            } else if (c == '\n' || c == '\r') {
+                return index;
+            } else if (c == '\\' && index + 1 < end && input.charAt(index + 1) != '\n' && input.charAt(index + 1) != '\r') {
+                index++;
+            }
+            index++;
+        }
+        return end;
+    }
+
+    private int scanIdentifier(int index) {
+        index++;
+        if (chars != null) {
+            index = RUNS.skipIdentifierPart(chars, index, end);
+        }
+        while (has(index) && hasFlag(input.charAt(index), IDENTIFIER_PART)) {
+            index++;
+        }
+        type = Token.Type.IDENTIFIER;
+        return index;
+    }
+
+    private int scanNumber(int index) {
+        int start = index;
+        number = 0;
+        digits = 0;
+        if (input.charAt(index) == '-') {
+            // A lone "-0" at the end of input is lexed as an operator.
+            if (input.charAt(index + 1) == '0' && !has(index + 2)) {
+                type = Token.Type.OPERATOR;
+                return index + 1;
+            }
+            index++;
+        }
+        if (input.charAt(index) == '0') {
+            index++;
+            digits++;
+            if (has(index) && isDigit(input.charAt(index))) {
+                throw error("Invalid integer format with leading zero", index);
+            }
+        } else {
+            index = scanDigits(index);
+        }
+        if (has(index) && input.charAt(index) == '.' && has(index + 1)) {
+            int fraction = index + 1;
+            index = scanDigits(fraction);
+            type = Token.Type.DECIMAL;
+            if (decode) {
+                value = digits <= MAX_LONG_DIGITS
+                        ? BigDecimal.valueOf(signed(start), index - fraction)
+                        : new BigDecimal(input.subSequence(start, index).toString());
+            }
+            return index;
+        }
+        type = Token.Type.INTEGER;
+        if (decode) {
+            if (digits <= MAX_LONG_DIGITS) {
+                value = Token.LONG;
+                number = signed(start);
+            } else {
+                value = new BigInteger(input.subSequence(start, index).toString());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Scans digits, accumulating their value into {@link #number} when
+     * decoding. The value is only meaningful while there are at most {@link
+     * #MAX_LONG_DIGITS} digits in total.
+     */
+    private int scanDigits(int index) {
+        if (chars != null && !decode) {
+            return RUNS.skipDigits(chars, index, end);
+        }
+        while (has(index) && isDigit(input.charAt(index))) {
+            if (decode) {
+                number = number * 10 + (input.charAt(index) - '0');
+                digits++;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    private long signed(int start) {
+        return input.charAt(start) == '-' ? -number : number;
+    }
+
+    private int scanCharacter(int index) {
+        index++;
+        boolean present = has(index);
+        char c = present ? input.charAt(index) : '\0';
+        if (present && c == '\\') {
+            index++;
+            if (!has(index) || !hasFlag(input.charAt(index), CHARACTER_ESCAPE)) {
+                throw error("Invalid escape sequence", index);
+            }
+            c = unescape(input.charAt(index));
+            index++;
+        } else if (present && (c == '\b' || c == '\n' || c == '\r' || c == '\t')) {
+            throw error("Wrong", index);
+        } else {
+            if (!present || c == '\'') {
+                throw error("Empty character literal", index);
+            } else if (bytes != null && c >= 0x80) {
+                int end = bytes.sequenceEnd(index);
+                String decoded = bytes.decode(index, end - index);
+                // Like a surrogate pair in a string, this is two characters.
+                if (decoded.length() != 1) {
+                    throw error("Expected end of character literal", end);
+                }
+                c = decoded.charAt(0);
+                index = end;
+            } else {
+                index++;
+            }
+        }
+        if (!has(index) || input.charAt(index) != '\'') {
+            throw error("Expected end of character literal", index);
+        }
+        type = Token.Type.CHARACTER;
+        if (decode) {
+            value = c;
+        }
+        return index + 1;
+    }
+
+    private int scanString(int index) {
+        index++;
+        int copied = index;
+        if (decode) {
+            builder.setLength(0);
+        }
+        while (true) {
+            if (!has(index)) {
+                throw error("Unterminated string literal", index);
+            }
+            char c = input.charAt(index);
+            if (c == '"') {
+                break;
+            } else if (c == '\\') {
+                index++;
+                if (!has(index) || !hasFlag(input.charAt(index), STRING_ESCAPE)) {
+                    throw error("Invalid escape sequence", index);
+                }
+                if (decode) {
+                    append(copied, index - 1).append(unescape(input.charAt(index)));
+                    copied = index + 1;
+                }
+                index++;
+            } else if (c == '\n' || c == '\r') {
+                throw error("Unterminated string literal", index);
+            } else {
+                index++;
+            }
+        }
+        type = Token.Type.STRING;
+        if (decode) {
+            value = builder.length() == 0
+                    ? input.subSequence(copied, index).toString()
+                    : append(copied, index).toString();
+        }
+        return index + 1;
+    }
+
+    /**
+     * Appends the characters in {@code [start, end)} of the input to the
+     * builder, decoding them if the input is UTF-8.
+     */
+    private StringBuilder append(int start, int end) {
+        return bytes != null ? builder.append(bytes.decode(start, end - start)) : builder.append(input, start, end);
+    }
+
+    /**
+     * Decodes the escape sequences in the characters between the quotes of a
+     * string or character literal, from left to right, as when lexing with
+     * {@link Lexer.Option#DECODE_LITERALS}. The escapes must be valid.
+     */
+    static String unescape(CharSequence characters) {
+        StringBuilder builder = new StringBuilder(characters.length());
+        for (int i = 0; i < characters.length(); i++) {
+            char c = characters.charAt(i);
+            builder.append(c == '\\' ? unescape(characters.charAt(++i)) : c);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the character denoted by an escape sequence, given the character
+     * following the backslash.
+     */
+    private static char unescape(char c) {
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            default:
+                return c;
+        }
+    }
+
+    private int scanOperator(int index) {
+        char c = input.charAt(index);
+        if (has(index + 1) && isDoubleOperator(c, input.charAt(index + 1))) {
+            type = Token.Type.OPERATOR;
+            return index + 2;
+        }
+        if (classify(c) == SPACE) {
+            throw error("Expected operator", index);
+        }
+        type = Token.Type.OPERATOR;
+        return bytes != null && c >= 0x80 ? bytes.sequenceEnd(index) : index + 1;
+    }
+
+    /**
+     * Returns true if the index is within the window, throwing {@link
+     * #UNDERFLOW} if it is past the end of an incomplete window.
+     */
+    private boolean has(int index) {
+        if (index < end) {
+            return true;
+        } else if (complete) {
+            return false;
+        }
+        throw UNDERFLOW;
+    }
+
+    /**
+     * Creates the exception for an error, without a stack trace if errors are
+     * being collected instead of thrown.
+     */
+    private ParseException error(String message, int index) {
+        return recover ? new ParseException(message, base + index, false) : new ParseException(message, base + index);
+    }
+
+    /**
+     * Finds the ends of runs of characters in an array, for {@link
+     * Lexer.Option#VECTORIZE}. Each method returns the index of the first
+     * character at or after {@code index} which is not part of the run, or
+     * {@code end}.
+     */
+    interface Runs {
+
+        /**
+         * Skips whitespace, recording newlines in the line index (if it is not
+         * {@code null}) at their index plus {@code base}.
+         */
+        int skipSpace(char[] chars, int index, int end, LineIndex lines, int base);
+
+        int skipIdentifierPart(char[] chars, int index, int end);
+
+        int skipDigits(char[] chars, int index, int end);
+
+    }
+
+    /**
+     * Loads the Vector API implementation of {@link Runs} by name, so that
+     * this class does not depend on the incubator module being present.
+     */
+    private static Runs loadRuns() {
+        try {
+            return (Runs) Class.forName("plc.project.VectorRuns").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    static boolean isDoubleOperator(char first, char second) {
+        switch (first) {
+            case '=':
+            case '!':
+            case '<':
+            case '>':
+                return second == '=';
+            case '&':
+            case '|':
+                return second == first;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean hasFlag(char c, int flag) {
+        return c < 128 && (FLAGS[c] & flag) != 0;
+    }
+
+}
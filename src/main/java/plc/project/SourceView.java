@@ -0,0 +1,91 @@
+package plc.project;
+
+/**
+ * A token literal which refers to its characters in the source instead of
+ * copying them (see {@link Lexer.Option#SOURCE_VIEWS}). The {@link String} is
+ * only created, once, when {@link #toString()} is called.
+ *
+ * As for {@link StringBuilder}, {@link #equals(Object)} is only true for
+ * another view with the same characters, since a {@link String} never equals
+ * a view; {@link #contentEquals(CharSequence)} compares against strings and
+ * other {@link CharSequence}s. A view keeps the whole source reachable.
+ */
+public final class SourceView implements CharSequence {
+
+    private final String source;
+    private final int start;
+    private final int end;
+    private String string;
+    private int hash;
+
+    SourceView(String source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= end - start) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + (end - start));
+        }
+        return source.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > this.end - this.start) {
+            throw new IndexOutOfBoundsException("Invalid range [" + start + ", " + end + ") for length " + (this.end - this.start));
+        }
+        return new SourceView(source, this.start + start, this.start + end);
+    }
+
+    /**
+     * Returns true if this view has the same characters as the given string,
+     * without creating a string for the view.
+     */
+    public boolean contentEquals(CharSequence other) {
+        if (other.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < other.length(); i++) {
+            if (source.charAt(start + i) != other.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof SourceView && contentEquals((SourceView) obj);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = this.hash;
+        if (hash == 0) {
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + source.charAt(i);
+            }
+            this.hash = hash;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        String string = this.string;
+        if (string == null) {
+            string = source.substring(start, end);
+            this.string = string;
+        }
+        return string;
+    }
+
+}
@@ -0,0 +1,200 @@
+package plc.project;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A lexer which reads its input incrementally from a {@link Reader} (or a
+ * {@link ReadableByteChannel}) and hands out tokens one at a time, instead of
+ * requiring the whole source as a {@link String} like {@link Lexer}.
+ *
+ * Input is read through a sliding buffer which is only grown when a single
+ * token does not fit, so peak memory depends on the longest token and not on
+ * the size of the input. Tokens (and any {@link ParseException}) are identical
+ * to those of {@link Lexer#lex()}, including their indices into the input.
+ */
+public final class StreamingLexer implements Iterator<Token>, Closeable {
+
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    private final Reader reader;
+    private final Window window;
+    private final Scanner scanner;
+    private int position = 0;
+    private int limit = 0;
+    private int base = 0;
+    private boolean complete = false;
+    private Token next = null;
+
+    public StreamingLexer(Reader reader) {
+        this(reader, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a streaming lexer with the given initial buffer capacity and
+     * lexer options.
+     */
+    public StreamingLexer(Reader reader, int capacity, Lexer.Option... options) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Buffer capacity must be positive: " + capacity);
+        }
+        this.reader = reader;
+        this.window = new Window(new char[capacity]);
+        this.scanner = new Scanner(window, new SymbolTable(), options.length == 0
+                ? EnumSet.noneOf(Lexer.Option.class) : EnumSet.copyOf(Arrays.asList(options)));
+        scanner.window(0, false, 0);
+    }
+
+    public StreamingLexer(ReadableByteChannel channel, Charset charset) {
+        this(Channels.newReader(channel, charset.newDecoder(), -1));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Token next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Token token = next;
+        next = null;
+        return token;
+    }
+
+    /**
+     * Returns a spliterator over the remaining tokens, which shares the state
+     * of this lexer.
+     */
+    public Spliterator<Token> spliterator() {
+        return Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    /**
+     * Returns a sequential stream over the remaining tokens, which closes the
+     * underlying reader when closed.
+     */
+    public Stream<Token> stream() {
+        return StreamSupport.stream(spliterator(), false).onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lexes the next token, refilling the buffer whenever the scanner reaches
+     * the end of the available input, or returns {@code null} at the end.
+     */
+    private Token advance() {
+        while (true) {
+            position = scanner.skip(position);
+            if (position == limit) {
+                if (complete) {
+                    return null;
+                }
+                fill();
+                continue;
+            }
+            int end;
+            try {
+                end = scanner.scan(position);
+            } catch (RuntimeException e) {
+                if (e != Scanner.UNDERFLOW) {
+                    throw e;
+                }
+                fill();
+                continue;
+            }
+            Token token = scanner.token(position, end);
+            position = end;
+            return token;
+        }
+    }
+
+    /**
+     * Moves the unconsumed input to the start of the buffer (growing it if the
+     * current token already fills it) and reads more input after it.
+     */
+    private void fill() {
+        char[] array = window.array;
+        int remaining = limit - position;
+        if (remaining == array.length) {
+            array = new char[array.length * 2];
+        }
+        System.arraycopy(window.array, position, array, 0, remaining);
+        window.array = array;
+        base += position;
+        position = 0;
+        limit = remaining;
+        try {
+            int read = reader.read(array, limit, array.length - limit);
+            if (read < 0) {
+                complete = true;
+            } else {
+                limit += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        scanner.window(limit, complete, base);
+    }
+
+    /**
+     * The buffer as seen by the {@link Scanner}. The array is replaced when
+     * the buffer grows. This is shared with {@link TokenPublisher}.
+     */
+    static final class Window implements CharSequence {
+
+        char[] array;
+
+        Window(char[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public int length() {
+            return array.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return array[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(array, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(array);
+        }
+
+    }
+
+}
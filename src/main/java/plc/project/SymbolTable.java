@@ -0,0 +1,133 @@
+package plc.project;
+
+/**
+ * A per-compilation table of identifier and keyword names. The lexer interns
+ * every identifier it reads into the table, so repeated occurrences of a name
+ * share a single {@link String} (allocated only the first time), and keywords
+ * resolve to their {@link Token.Kind} along the way.
+ *
+ * Keywords are pre-seeded with the same string constants used in the parser,
+ * so even literal comparisons against keywords succeed by identity. The table
+ * is not thread-safe.
+ */
+public final class SymbolTable {
+
+    private static final SymbolTable KEYWORDS = new SymbolTable(64);
+
+    static {
+        for (Token.Kind kind : Token.Kind.values()) {
+            if (kind.getType() == Token.Type.IDENTIFIER && kind.getLiteral() != null) {
+                KEYWORDS.insert(kind.getLiteral(), kind);
+            }
+        }
+    }
+
+    private String[] symbols;
+    private Token.Kind[] kinds;
+    private int size = 0;
+
+    public SymbolTable() {
+        this(256);
+        for (int slot = 0; slot < KEYWORDS.symbols.length; slot++) {
+            if (KEYWORDS.symbols[slot] != null) {
+                insert(KEYWORDS.symbols[slot], KEYWORDS.kinds[slot]);
+            }
+        }
+    }
+
+    private SymbolTable(int capacity) {
+        symbols = new String[capacity];
+        kinds = new Token.Kind[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the canonical instance of the given name.
+     */
+    public String intern(CharSequence name) {
+        return symbols[find(name, 0, name.length())];
+    }
+
+    /**
+     * Returns the slot holding the name in {@code [start, end)} of the source,
+     * adding the name to the table if it is not present.
+     */
+    int find(CharSequence source, int start, int end) {
+        int slot = lookup(source, start, end);
+        if (symbols[slot] == null) {
+            insert(source.subSequence(start, end).toString(), Token.Kind.IDENTIFIER);
+            slot = lookup(source, start, end);
+        }
+        return slot;
+    }
+
+    String symbol(int slot) {
+        return symbols[slot];
+    }
+
+    Token.Kind kind(int slot) {
+        return kinds[slot];
+    }
+
+    /**
+     * Returns the kind of the keyword in {@code [start, end)} of the source, or
+     * {@code null} if it is not a keyword. Nothing is allocated.
+     */
+    static Token.Kind keyword(CharSequence source, int start, int end) {
+        return KEYWORDS.kinds[KEYWORDS.lookup(source, start, end)];
+    }
+
+    private void insert(String symbol, Token.Kind kind) {
+        if (2 * (size + 1) > symbols.length) {
+            String[] oldSymbols = symbols;
+            Token.Kind[] oldKinds = kinds;
+            symbols = new String[oldSymbols.length * 2];
+            kinds = new Token.Kind[symbols.length];
+            for (int slot = 0; slot < oldSymbols.length; slot++) {
+                if (oldSymbols[slot] != null) {
+                    int target = lookup(oldSymbols[slot], 0, oldSymbols[slot].length());
+                    symbols[target] = oldSymbols[slot];
+                    kinds[target] = oldKinds[slot];
+                }
+            }
+        }
+        int slot = lookup(symbol, 0, symbol.length());
+        symbols[slot] = symbol;
+        kinds[slot] = kind;
+        size++;
+    }
+
+    /**
+     * Returns the slot containing the name, or the empty slot where it would
+     * be inserted, using linear probing. The hash is the same as {@link
+     * String#hashCode()}.
+     */
+    private int lookup(CharSequence source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        int mask = symbols.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (symbols[slot] != null && !matches(symbols[slot], source, start, end)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static boolean matches(String symbol, CharSequence source, int start, int end) {
+        if (symbol.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < symbol.length(); i++) {
+            if (symbol.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -1,5 +1,7 @@
 package plc.project;
 
+import java.math.BigInteger;
+
 public final class Token {
 
     public enum Type {
@@ -11,39 +13,293 @@ public final class Token {
         OPERATOR
     }
 
+    /**
+     * A finer classification of tokens than {@link Type}, which gives each
+     * keyword and each operator used by the grammar its own kind, so the parser
+     * can match them by identity instead of comparing literals. Other tokens
+     * have the kind of their type.
+     */
+    public enum Kind {
+        IDENTIFIER(Type.IDENTIFIER, null),
+        INTEGER(Type.INTEGER, null),
+        DECIMAL(Type.DECIMAL, null),
+        CHARACTER(Type.CHARACTER, null),
+        STRING(Type.STRING, null),
+        OPERATOR(Type.OPERATOR, null),
+        LIST(Type.IDENTIFIER, "LIST"),
+        VAR(Type.IDENTIFIER, "VAR"),
+        VAL(Type.IDENTIFIER, "VAL"),
+        FUN(Type.IDENTIFIER, "FUN"),
+        DO(Type.IDENTIFIER, "DO"),
+        END(Type.IDENTIFIER, "END"),
+        LET(Type.IDENTIFIER, "LET"),
+        IF(Type.IDENTIFIER, "IF"),
+        ELSE(Type.IDENTIFIER, "ELSE"),
+        SWITCH(Type.IDENTIFIER, "SWITCH"),
+        CASE(Type.IDENTIFIER, "CASE"),
+        DEFAULT(Type.IDENTIFIER, "DEFAULT"),
+        WHILE(Type.IDENTIFIER, "WHILE"),
+        RETURN(Type.IDENTIFIER, "RETURN"),
+        NIL(Type.IDENTIFIER, "NIL"),
+        TRUE(Type.IDENTIFIER, "TRUE"),
+        FALSE(Type.IDENTIFIER, "FALSE"),
+        LEFT_PAREN(Type.OPERATOR, "("),
+        RIGHT_PAREN(Type.OPERATOR, ")"),
+        LEFT_BRACKET(Type.OPERATOR, "["),
+        RIGHT_BRACKET(Type.OPERATOR, "]"),
+        COMMA(Type.OPERATOR, ","),
+        SEMICOLON(Type.OPERATOR, ";"),
+        COLON(Type.OPERATOR, ":"),
+        ASSIGN(Type.OPERATOR, "="),
+        PLUS(Type.OPERATOR, "+"),
+        MINUS(Type.OPERATOR, "-"),
+        STAR(Type.OPERATOR, "*"),
+        SLASH(Type.OPERATOR, "/"),
+        CARET(Type.OPERATOR, "^"),
+        LESS(Type.OPERATOR, "<"),
+        GREATER(Type.OPERATOR, ">"),
+        LESS_EQUAL(Type.OPERATOR, "<="),
+        GREATER_EQUAL(Type.OPERATOR, ">="),
+        EQUAL(Type.OPERATOR, "=="),
+        NOT_EQUAL(Type.OPERATOR, "!="),
+        AND(Type.OPERATOR, "&&"),
+        OR(Type.OPERATOR, "||");
+
+        /**
+         * The kinds of single character operators, indexed by character.
+         */
+        private static final Kind[] SINGLE_OPERATORS = new Kind[128];
+
+        static {
+            for (Kind kind : values()) {
+                if (kind.type == Type.OPERATOR && kind.literal != null && kind.literal.length() == 1) {
+                    SINGLE_OPERATORS[kind.literal.charAt(0)] = kind;
+                }
+            }
+        }
+
+        private final Type type;
+        private final String literal;
+
+        Kind(Type type, String literal) {
+            this.type = type;
+            this.literal = literal;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * Returns the literal of this kind of token, or {@code null} if tokens
+         * of this kind may have any literal.
+         */
+        public String getLiteral() {
+            return literal;
+        }
+
+        /**
+         * Returns the kind of a token with the given type and literal.
+         */
+        public static Kind of(Type type, CharSequence literal) {
+            switch (type) {
+                case IDENTIFIER:
+                    Kind keyword = SymbolTable.keyword(literal, 0, literal.length());
+                    return keyword != null ? keyword : IDENTIFIER;
+                case INTEGER:
+                    return INTEGER;
+                case DECIMAL:
+                    return DECIMAL;
+                case CHARACTER:
+                    return CHARACTER;
+                case STRING:
+                    return STRING;
+                default:
+                    return operator(literal, 0, literal.length());
+            }
+        }
+
+        /**
+         * Returns the kind of the operator in {@code [start, end)} of the
+         * source, which is {@link #OPERATOR} for operators not used by the
+         * grammar. Nothing is allocated.
+         */
+        static Kind operator(CharSequence source, int start, int end) {
+            char first = source.charAt(start);
+            if (end - start == 1) {
+                Kind kind = first < 128 ? SINGLE_OPERATORS[first] : null;
+                return kind != null ? kind : OPERATOR;
+            } else if (end - start == 2) {
+                char second = source.charAt(start + 1);
+                switch (first) {
+                    case '<':
+                        return second == '=' ? LESS_EQUAL : OPERATOR;
+                    case '>':
+                        return second == '=' ? GREATER_EQUAL : OPERATOR;
+                    case '=':
+                        return second == '=' ? EQUAL : OPERATOR;
+                    case '!':
+                        return second == '=' ? NOT_EQUAL : OPERATOR;
+                    case '&':
+                        return second == '&' ? AND : OPERATOR;
+                    case '|':
+                        return second == '|' ? OR : OPERATOR;
+                }
+            }
+            return OPERATOR;
+        }
+    }
+
+    /**
+     * The value of an integer which fits in a {@code long}, which is stored in
+     * {@link #number} instead.
+     */
+    static final Object LONG = new Object();
+
     private final Type type;
-    private final String literal;
+    private CharSequence literal;
     private final int index;
+    private Kind kind;
+    private Object value;
+    private long number;
 
     public Token(Type type, String literal, int index) {
+        this(type, (CharSequence) literal, index);
+    }
+
+    /**
+     * Creates a token with a kind already determined by the lexer, such as
+     * from a {@link SymbolTable}.
+     */
+    Token(Type type, CharSequence literal, int index, Kind kind) {
+        this(type, literal, index);
+        this.kind = kind;
+    }
+
+    /**
+     * Creates a token whose literal is only converted to a {@link String} the
+     * first time {@link #getLiteral()} is called, such as a slice of a mapped
+     * source file.
+     */
+    Token(Type type, CharSequence literal, int index) {
         this.type = type;
         this.literal = literal;
         this.index = index;
     }
 
+    /**
+     * Creates a literal token with the value decoded by the lexer, where an
+     * integer value of {@link #LONG} is given by {@code number}.
+     */
+    Token(Type type, CharSequence literal, int index, Object value, long number) {
+        this(type, literal, index);
+        this.value = value;
+        this.number = number;
+    }
+
     public Type getType() {
         return type;
     }
 
+    public Kind getKind() {
+        Kind kind = this.kind;
+        if (kind == null) {
+            kind = Kind.of(type, literal);
+            this.kind = kind;
+        }
+        return kind;
+    }
+
     public String getLiteral() {
-        return literal;
+        CharSequence literal = this.literal;
+        if (!(literal instanceof String)) {
+            literal = literal.toString();
+            this.literal = literal;
+        }
+        return (String) literal;
     }
 
     public int getIndex() {
         return index;
     }
 
+    /**
+     * Returns true if the literal of this token is equal to the given string,
+     * without creating the literal if it is a {@link SourceView}.
+     */
+    public boolean literalEquals(String literal) {
+        CharSequence current = this.literal;
+        return current instanceof SourceView ? ((SourceView) current).contentEquals(literal) : getLiteral().equals(literal);
+    }
+
+    /**
+     * Returns true if the value of this literal was decoded by the lexer (see
+     * {@link Lexer.Option#DECODE_LITERALS}).
+     */
+    public boolean hasValue() {
+        return value != null;
+    }
+
+    /**
+     * Returns true if this is an integer whose decoded value fits in a
+     * {@code long}, available from {@link #getLongValue()} without boxing.
+     */
+    public boolean hasLongValue() {
+        return value == LONG;
+    }
+
+    public long getLongValue() {
+        if (value != LONG) {
+            throw new IllegalStateException("Token does not have a long value: " + this);
+        }
+        return number;
+    }
+
+    /**
+     * Returns the decoded value of this literal: a {@link BigInteger}, {@link
+     * java.math.BigDecimal}, {@link Character}, or {@link String} (without
+     * quotes and with escapes replaced), depending on the type.
+     */
+    public Object getValue() {
+        if (value == null) {
+            throw new IllegalStateException("Token does not have a decoded value: " + this);
+        }
+        return value == LONG ? BigInteger.valueOf(number) : value;
+    }
+
+    /**
+     * Returns this token moved by the given number of characters, sharing the
+     * same literal. The token itself is returned if the offset is zero.
+     */
+    Token shift(int offset) {
+        if (offset == 0) {
+            return this;
+        }
+        Token token = new Token(type, literal, index + offset, value, number);
+        token.kind = kind;
+        return token;
+    }
+
     @Override
     public boolean equals(Object obj) {
         return obj instanceof Token
                 && type == ((Token) obj).type
-                && literal.equals(((Token) obj).literal)
+                && literalEquals((Token) obj)
                 && index == ((Token) obj).index;
     }
 
+    private boolean literalEquals(Token other) {
+        if (literal instanceof SourceView) {
+            return ((SourceView) literal).contentEquals(other.literal instanceof SourceView ? other.literal : other.getLiteral());
+        } else if (other.literal instanceof SourceView) {
+            return ((SourceView) other.literal).contentEquals(getLiteral());
+        }
+        return getLiteral().equals(other.getLiteral());
+    }
+
     @Override
     public String toString() {
-        return type + "=" + literal + "@" + index;
+        return type + "=" + getLiteral() + "@" + index;
     }
 
 }
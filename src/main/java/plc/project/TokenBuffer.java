@@ -0,0 +1,148 @@
+package plc.project;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact sequence of tokens stored as parallel primitive arrays (the type
+ * ordinal, start offset, and length of each token) over the shared source,
+ * instead of one {@link Token} and literal {@link String} per token.
+ *
+ * Tokens are only created when requested through {@link #get(int)}; the
+ * {@link Parser} reads types and compares literals directly from the arrays.
+ */
+public final class TokenBuffer {
+
+    private static final Token.Type[] TYPES = Token.Type.values();
+
+    private final CharSequence source;
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int size = 0;
+
+    TokenBuffer(CharSequence source, int capacity) {
+        this.source = source;
+        this.types = new byte[Math.max(capacity, 16)];
+        this.starts = new int[types.length];
+        this.lengths = new int[types.length];
+    }
+
+    /**
+     * Creates a buffer holding the given tokens, which are not copied.
+     */
+    TokenBuffer(CharSequence source, byte[] types, int[] starts, int[] lengths) {
+        this.source = source;
+        this.types = types;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.size = types.length;
+    }
+
+    /**
+     * Appends a token spanning {@code [start, end)} of the source.
+     */
+    void add(Token.Type type, int start, int end) {
+        if (size == types.length) {
+            int capacity = Math.max(size * 2, 16);
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = end - start;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public Token.Type getType(int i) {
+        return TYPES[types[check(i)]];
+    }
+
+    /**
+     * Returns the kind of the i-th token, looking up keywords and operators
+     * without creating the literal.
+     */
+    public Token.Kind getKind(int i) {
+        Token.Type type = getType(i);
+        if (type == Token.Type.IDENTIFIER) {
+            Token.Kind keyword = SymbolTable.keyword(source, starts[i], starts[i] + lengths[i]);
+            return keyword != null ? keyword : Token.Kind.IDENTIFIER;
+        } else if (type == Token.Type.OPERATOR) {
+            return Token.Kind.operator(source, starts[i], starts[i] + lengths[i]);
+        }
+        return Token.Kind.of(type, "");
+    }
+
+    public int getIndex(int i) {
+        return starts[check(i)];
+    }
+
+    public int getLength(int i) {
+        return lengths[check(i)];
+    }
+
+    public String getLiteral(int i) {
+        return source.subSequence(starts[check(i)], starts[i] + lengths[i]).toString();
+    }
+
+    /**
+     * Returns true if the literal of the i-th token is equal to the given
+     * string, without creating the literal.
+     */
+    public boolean literalEquals(int i, String literal) {
+        if (lengths[check(i)] != literal.length()) {
+            return false;
+        }
+        int start = starts[i];
+        for (int j = 0; j < literal.length(); j++) {
+            if (source.charAt(start + j) != literal.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the i-th token.
+     */
+    public Token get(int i) {
+        return new Token(getType(i), source.subSequence(starts[i], starts[i] + lengths[i]), starts[i]);
+    }
+
+    /**
+     * Returns a list view of the tokens, creating each token when accessed.
+     */
+    public List<Token> asList() {
+        return new AbstractList<>() {
+
+            @Override
+            public Token get(int index) {
+                return TokenBuffer.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+        };
+    }
+
+    private int check(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size);
+        }
+        return i;
+    }
+
+}
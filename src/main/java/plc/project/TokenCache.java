@@ -0,0 +1,182 @@
+package plc.project;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * An on-disk cache of lexed sources, so that sources which are lexed again
+ * and again (such as libraries) are read back from a binary file instead of
+ * being lexed. Entries are keyed by the SHA-256 hash of the format version,
+ * the token types, and the source, so a changed source or lexer simply misses
+ * the cache; stale entries are never read, but are also not deleted. {@link
+ * #VERSION} must be bumped whenever the lexer changes the tokens it produces
+ * for a source.
+ *
+ * Each entry is a file holding a 16 byte header (magic number, format version,
+ * source length and token count) followed by the start offsets, lengths and
+ * type ordinals of the tokens as little-endian arrays, the same layout as a
+ * {@link TokenBuffer}. Entries are memory-mapped and the arrays are copied in
+ * bulk, so a hit costs a hash of the source and a copy of 9 bytes per token,
+ * about half the time of {@link Lexer#lexBuffer()} (see {@code
+ * LexerBenchmark}). Entries are larger than the source, so the cache pays off
+ * where reading is cheaper than lexing, such as for sources read from slower
+ * storage or lexed repeatedly by short-lived JVMs.
+ *
+ * The directory may be shared by several JVMs and users. An entry is written
+ * to a temporary file in the directory, made readable by everyone, and then
+ * atomically renamed to its final name, so readers only ever see complete
+ * entries, and writers racing on the same source replace each other's
+ * identical entries. The cache never fails a lex: an entry which cannot be
+ * read or fails validation (such as from an older format) is a miss, and an
+ * entry which cannot be written is skipped.
+ */
+public final class TokenCache {
+
+    private static final int MAGIC = 0x504C4354; // "PLCT"
+    private static final byte VERSION = 2;
+    private static final int HEADER = 16;
+    private static final Token.Type[] TYPES = Token.Type.values();
+    private static final byte[] FORMAT = (MAGIC + ":" + VERSION + ":" + Arrays.toString(TYPES) + ":")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final Set<PosixFilePermission> PERMISSIONS = PosixFilePermissions.fromString("rw-r--r--");
+
+    private final Path directory;
+
+    /**
+     * Creates a cache storing its entries in the given directory, which is
+     * created if it does not exist.
+     */
+    public TokenCache(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the tokens of the source, read from the cache if it has a valid
+     * entry for the source, and otherwise lexed with {@link Lexer#lexBuffer()}
+     * and added to the cache if possible. A {@link ParseException} is thrown
+     * as when lexing, and nothing is cached for the source.
+     */
+    public TokenBuffer lex(String source) {
+        Path path = directory.resolve(key(source) + ".tokens");
+        TokenBuffer tokens = read(path, source);
+        if (tokens == null) {
+            tokens = new Lexer(source).lexBuffer();
+            try {
+                write(path, tokens);
+            } catch (IOException e) {
+                // The tokens are still returned, only not cached.
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 hash of the format and the UTF-8 encoded
+     * source.
+     */
+    static String key(String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(FORMAT);
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is required to be supported.", e);
+        }
+    }
+
+    /**
+     * Reads the entry at the given path, or returns {@code null} if there is
+     * none, it cannot be read, or it is not a valid entry for the source.
+     */
+    private static TokenBuffer read(Path path, String source) {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER || length > Integer.MAX_VALUE) {
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != source.length()) {
+                return null;
+            }
+            int size = buffer.getInt();
+            if (size < 0 || size > source.length() || buffer.remaining() != 9L * size) {
+                return null;
+            }
+            int[] starts = new int[size];
+            int[] lengths = new int[size];
+            byte[] types = new byte[size];
+            buffer.asIntBuffer().get(starts).get(lengths);
+            buffer.position(buffer.position() + 8 * size).get(types);
+            int end = 0;
+            for (int i = 0; i < size; i++) {
+                if (types[i] < 0 || types[i] >= TYPES.length || starts[i] < end
+                        || lengths[i] < 0 || lengths[i] > source.length() - starts[i]) {
+                    return null;
+                }
+                end = starts[i] + lengths[i];
+            }
+            return new TokenBuffer(source, types, starts, lengths);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the entry for the tokens to a temporary file and moves it to the
+     * given path. If the file system cannot move it atomically, the entry is
+     * not written, since other JVMs could read it partially written.
+     */
+    private static void write(Path path, TokenBuffer tokens) throws IOException {
+        int size = tokens.size();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + 9 * size).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC).putInt(VERSION).putInt(tokens.getSource().length()).putInt(size);
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(HEADER + 4 * i, tokens.getIndex(i));
+            buffer.putInt(HEADER + 4 * (size + i), tokens.getLength(i));
+            buffer.put(HEADER + 8 * size + i, (byte) tokens.getType(i).ordinal());
+        }
+        Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try {
+                // Temporary files are only readable by their owner.
+                Files.setPosixFilePermissions(temporary, PERMISSIONS);
+            } catch (UnsupportedOperationException e) {
+                // The file system has no POSIX permissions to set.
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package plc.project;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded single-producer, single-consumer ring buffer handing tokens from
+ * a lexer thread to a parser thread (see {@link Parser#parsePipelined}).
+ *
+ * The producer and consumer each own one counter, which the other only reads,
+ * so no locks or compare-and-set operations are needed: slots are written
+ * before the tail is published with release semantics and read after it is
+ * read with acquire semantics. A side which cannot make progress spins
+ * briefly and then parks for a short interval before checking again.
+ */
+final class TokenPipe {
+
+    /**
+     * Thrown to the producer when the consumer has cancelled the pipe. This is
+     * a preallocated signal and carries no stack trace.
+     */
+    static final RuntimeException CANCELLED = new RuntimeException("Token pipe cancelled", null, false, false) {};
+
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(TokenPipe.class, "head", long.class);
+            TAIL = lookup.findVarHandle(TokenPipe.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final int SPINS = 128;
+    private static final long PARK_NANOS = 10_000;
+
+    private final Token[] slots;
+    private final int mask;
+    @SuppressWarnings("unused") // accessed through HEAD
+    private long head = 0;
+    @SuppressWarnings("unused") // accessed through TAIL
+    private long tail = 0;
+    private volatile boolean closed = false;
+    private volatile Throwable error = null;
+    private volatile boolean cancelled = false;
+
+    /**
+     * Creates a pipe holding up to the given number of tokens, rounded up to a
+     * power of two.
+     */
+    TokenPipe(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Pipe capacity must be positive: " + capacity);
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        slots = new Token[size];
+        mask = slots.length - 1;
+    }
+
+    /**
+     * Adds a token, waiting while the pipe is full. Called by the producer.
+     */
+    void put(Token token) {
+        long tail = (long) TAIL.getOpaque(this);
+        int spins = 0;
+        while (tail - (long) HEAD.getAcquire(this) == slots.length) {
+            if (cancelled) {
+                throw CANCELLED;
+            }
+            spins = await(spins);
+        }
+        slots[(int) tail & mask] = token;
+        TAIL.setRelease(this, tail + 1);
+    }
+
+    /**
+     * Marks the end of the tokens. Called by the producer.
+     */
+    void close() {
+        closed = true;
+    }
+
+    /**
+     * Marks the end of the tokens because the producer failed with the given
+     * exception or error, which is rethrown to the consumer once it has taken
+     * the tokens before it.
+     */
+    void fail(Throwable error) {
+        this.error = error;
+        closed = true;
+    }
+
+    /**
+     * Removes the next token, waiting while the pipe is empty, or returns
+     * {@code null} at the end. Called by the consumer.
+     */
+    Token take() {
+        long head = (long) HEAD.getOpaque(this);
+        int spins = 0;
+        while (head == (long) TAIL.getAcquire(this)) {
+            if (closed) {
+                // The tail may have been published just before closing.
+                if (head != (long) TAIL.getAcquire(this)) {
+                    break;
+                } else if (error instanceof Error) {
+                    throw (Error) error;
+                } else if (error != null) {
+                    throw (RuntimeException) error;
+                }
+                return null;
+            }
+            spins = await(spins);
+        }
+        int slot = (int) head & mask;
+        Token token = slots[slot];
+        slots[slot] = null;
+        HEAD.setRelease(this, head + 1);
+        return token;
+    }
+
+    /**
+     * Discards the remaining tokens until the producer is done, and returns the
+     * exception or error it failed with, if any. Called by the consumer.
+     */
+    Throwable drain() {
+        try {
+            while (take() != null) {
+                // The tokens are not needed, only how the producer finished.
+            }
+            return null;
+        } catch (RuntimeException | Error e) {
+            return e;
+        }
+    }
+
+    /**
+     * Stops the producer at its next attempt to add a token to a full pipe.
+     * Called by the consumer.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    private static int await(int spins) {
+        if (spins < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return spins + 1;
+    }
+
+}
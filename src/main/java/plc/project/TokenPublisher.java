@@ -0,0 +1,277 @@
+package plc.project;
+
+import java.nio.CharBuffer;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A reactive lexer which subscribes to chunks of input and publishes tokens to
+ * a single subscriber (see {@link Lexer#publisher(Lexer.Option...)}). Tokens,
+ * and any {@link ParseException}, are identical to those of {@link
+ * Lexer#lex()}, including their indices into the whole input.
+ *
+ * Both directions respect backpressure: tokens are only published as they are
+ * requested, and chunks are requested one at a time when the lexer needs more
+ * input for the next token, so at most one token is lexed ahead of demand.
+ * Chunks are buffered in a sliding window like {@link StreamingLexer}, which
+ * is only grown when a single token does not fit. A chunk is owned by the
+ * publisher once it has been passed to {@link #onNext(CharBuffer)} and must
+ * not be modified afterwards.
+ *
+ * Signals from both sides may arrive on any thread. All lexing and all calls
+ * to the subscriber happen in {@link #drain()}, which is entered by one thread
+ * at a time, and which repeats while signals arrive during it.
+ */
+final class TokenPublisher implements Flow.Processor<CharBuffer, Token> {
+
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * A subscription which ignores all signals. It replaces the upstream once
+     * terminated, so that a later {@link #onSubscribe(Flow.Subscription)} is
+     * cancelled immediately, and is given to rejected subscribers.
+     */
+    private static final Flow.Subscription CANCELLED = new Flow.Subscription() {
+        @Override
+        public void request(long n) {}
+
+        @Override
+        public void cancel() {}
+    };
+
+    private final StreamingLexer.Window window = new StreamingLexer.Window(new char[DEFAULT_CAPACITY]);
+    private final Scanner scanner;
+    private final Queue<CharBuffer> chunks = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<>();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile Flow.Subscriber<? super Token> downstream = null;
+    private volatile boolean cancelled = false;
+    private volatile boolean finished = false;
+    private volatile Throwable failure = null;
+    private volatile Throwable invalid = null;
+
+    // The remaining state is only accessed in drain().
+    private int position = 0;
+    private int limit = 0;
+    private int base = 0;
+    private boolean complete = false;
+    private boolean awaiting = false;
+    private boolean done = false;
+    private Token next = null;
+
+    TokenPublisher(Set<Lexer.Option> options) {
+        this.scanner = new Scanner(window, new SymbolTable(), options);
+        scanner.window(0, false, 0);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Token> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(CANCELLED);
+            subscriber.onError(new IllegalStateException("A token publisher only supports one subscriber."));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    invalid = new IllegalArgumentException("Requested a non-positive number of tokens: " + n);
+                } else {
+                    requested.getAndUpdate(r -> r + n < 0 ? Long.MAX_VALUE : r + n);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                drain();
+            }
+        });
+        downstream = subscriber;
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (!upstream.compareAndSet(null, subscription)) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(CharBuffer chunk) {
+        chunks.add(chunk);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        failure = throwable;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        finished = true;
+        drain();
+    }
+
+    /**
+     * Lexes and publishes tokens for as long as there is demand and input,
+     * unless another thread is already doing so, in which case that thread
+     * will repeat its work after this signal.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            emit();
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void emit() {
+        Flow.Subscriber<? super Token> subscriber = downstream;
+        if (subscriber == null || done) {
+            return;
+        }
+        while (true) {
+            if (cancelled) {
+                terminate();
+                return;
+            } else if (invalid != null) {
+                terminate();
+                subscriber.onError(invalid);
+                return;
+            }
+            if (next == null) {
+                try {
+                    next = advance();
+                } catch (RuntimeException e) {
+                    terminate();
+                    subscriber.onError(e);
+                    return;
+                }
+                if (next == null) {
+                    if (complete) {
+                        terminate();
+                        subscriber.onComplete();
+                    } else if (failure != null && chunks.isEmpty()) {
+                        terminate();
+                        subscriber.onError(failure);
+                    }
+                    return;
+                }
+            }
+            long demand = requested.get();
+            if (demand == 0) {
+                return;
+            }
+            if (demand != Long.MAX_VALUE) {
+                requested.decrementAndGet();
+            }
+            Token token = next;
+            next = null;
+            subscriber.onNext(token);
+        }
+    }
+
+    /**
+     * Lexes the next token, taking the next chunk whenever the scanner reaches
+     * the end of the available input, or returns {@code null} if more input
+     * is needed or all input has been lexed (when {@link #complete} is set).
+     */
+    private Token advance() {
+        while (true) {
+            position = scanner.skip(position);
+            if (position == limit) {
+                if (complete || !fill()) {
+                    return null;
+                }
+                continue;
+            }
+            int end;
+            try {
+                end = scanner.scan(position);
+            } catch (RuntimeException e) {
+                if (e != Scanner.UNDERFLOW) {
+                    throw e;
+                }
+                if (!fill()) {
+                    return null;
+                }
+                continue;
+            }
+            Token token = scanner.token(position, end);
+            position = end;
+            return token;
+        }
+    }
+
+    /**
+     * Moves the unconsumed input to the start of the buffer (growing it if the
+     * next chunk does not fit after it) and appends the next chunk, or marks
+     * the input complete if the upstream has completed. Returns false if no
+     * chunk is available yet, after requesting one if it has not already.
+     */
+    private boolean fill() {
+        CharBuffer chunk = chunks.poll();
+        if (chunk == null) {
+            if (finished && failure == null) {
+                complete = true;
+                scanner.window(limit, true, base);
+                return true;
+            }
+            Flow.Subscription subscription = upstream.get();
+            if (!awaiting && subscription != null && !finished && failure == null) {
+                awaiting = true;
+                subscription.request(1);
+            }
+            return false;
+        }
+        awaiting = false;
+        char[] array = window.array;
+        int remaining = limit - position;
+        if (remaining + chunk.remaining() > array.length) {
+            array = new char[Math.max(array.length * 2, remaining + chunk.remaining())];
+        }
+        System.arraycopy(window.array, position, array, 0, remaining);
+        window.array = array;
+        base += position;
+        position = 0;
+        limit = remaining + chunk.remaining();
+        chunk.get(array, remaining, chunk.remaining());
+        scanner.window(limit, false, base);
+        return true;
+    }
+
+    /**
+     * Stops publishing, cancelling the upstream and releasing buffered input.
+     */
+    private void terminate() {
+        done = true;
+        next = null;
+        chunks.clear();
+        window.array = new char[0];
+        Flow.Subscription subscription = upstream.getAndSet(CANCELLED);
+        if (subscription != null && subscription != CANCELLED) {
+            subscription.cancel();
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+package plc.project;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Finds the ends of whitespace, identifier and digit runs with the incubating
+ * Vector API, comparing a full vector of characters at a time and locating the
+ * first character outside the run with {@link VectorMask#firstTrue()}. The
+ * tail of the array which does not fill a vector is scanned one character at a
+ * time.
+ *
+ * This class is only loaded through {@link Scanner#RUNS}, which falls back to
+ * the scalar loops of the {@link Scanner} if {@code jdk.incubator.vector} is
+ * not available.
+ */
+final class VectorRuns implements Scanner.Runs {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    /**
+     * The number of characters checked one at a time before using vectors,
+     * since most runs are short enough that loading a vector costs more.
+     */
+    private static final int SCALAR = 8;
+
+    @Override
+    public int skipSpace(char[] chars, int index, int end, LineIndex lines, int base) {
+        int length = SPECIES.length();
+        int scalar = Math.min(end, index + SCALAR);
+        while (index < scalar && isSpace(chars[index])) {
+            if (chars[index] == '\n' && lines != null) {
+                lines.newline(base + index);
+            }
+            index++;
+        }
+        if (index < scalar) {
+            return index;
+        }
+        while (index + length <= end) {
+            ShortVector vector = ShortVector.fromCharArray(SPECIES, chars, index);
+            VectorMask<Short> space = vector.eq((short) ' ')
+                    .or(vector.compare(VectorOperators.GE, (short) '\b').and(vector.compare(VectorOperators.LE, (short) '\r')));
+            int first = space.not().firstTrue();
+            if (lines != null) {
+                long newlines = vector.eq((short) '\n').toLong() & ((1L << first) - 1);
+                while (newlines != 0) {
+                    lines.newline(base + index + Long.numberOfTrailingZeros(newlines));
+                    newlines &= newlines - 1;
+                }
+            }
+            if (first < length) {
+                return index + first;
+            }
+            index += length;
+        }
+        while (index < end && isSpace(chars[index])) {
+            if (chars[index] == '\n' && lines != null) {
+                lines.newline(base + index);
+            }
+            index++;
+        }
+        return index;
+    }
+
+    @Override
+    public int skipIdentifierPart(char[] chars, int index, int end) {
+        int length = SPECIES.length();
+        int scalar = Math.min(end, index + SCALAR);
+        while (index < scalar && isIdentifierPart(chars[index])) {
+            index++;
+        }
+        if (index < scalar) {
+            return index;
+        }
+        while (index + length <= end) {
+            ShortVector vector = ShortVector.fromCharArray(SPECIES, chars, index);
+            // Setting bit 5 maps upper case letters to lower case, and no
+            // other character into the range of lower case letters.
+            ShortVector lower = vector.or((short) 0x20);
+            VectorMask<Short> part = digits(vector)
+                    .or(lower.compare(VectorOperators.GE, (short) 'a').and(lower.compare(VectorOperators.LE, (short) 'z')))
+                    .or(vector.eq((short) '_'))
+                    .or(vector.eq((short) '-'));
+            int first = part.not().firstTrue();
+            if (first < length) {
+                return index + first;
+            }
+            index += length;
+        }
+        while (index < end && isIdentifierPart(chars[index])) {
+            index++;
+        }
+        return index;
+    }
+
+    @Override
+    public int skipDigits(char[] chars, int index, int end) {
+        int length = SPECIES.length();
+        int scalar = Math.min(end, index + SCALAR);
+        while (index < scalar && chars[index] >= '0' && chars[index] <= '9') {
+            index++;
+        }
+        if (index < scalar) {
+            return index;
+        }
+        while (index + length <= end) {
+            int first = digits(ShortVector.fromCharArray(SPECIES, chars, index)).not().firstTrue();
+            if (first < length) {
+                return index + first;
+            }
+            index += length;
+        }
+        while (index < end && chars[index] >= '0' && chars[index] <= '9') {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the lanes containing digits. Characters from 0x8000 up are
+     * negative as shorts, and so are never in the range.
+     */
+    private static VectorMask<Short> digits(ShortVector vector) {
+        return vector.compare(VectorOperators.GE, (short) '0').and(vector.compare(VectorOperators.LE, (short) '9'));
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c >= '\b' && c <= '\r';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return c >= '0' && c <= '9' || c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c == '_' || c == '-';
+    }
+
+}
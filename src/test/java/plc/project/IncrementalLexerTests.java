@@ -0,0 +1,101 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class IncrementalLexerTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testEdit(String test, String source, int start, int end, String replacement) {
+        IncrementalLexer lexer = new IncrementalLexer(source);
+        String updated = source.substring(0, start) + replacement + source.substring(end);
+        Assertions.assertEquals(new Lexer(updated).lex(), lexer.edit(start, end, replacement));
+        Assertions.assertEquals(updated, lexer.getSource());
+    }
+
+    private static Stream<Arguments> testEdit() {
+        return Stream.of(
+                Arguments.of("Insert Identifier", "LET x = 5;", 4, 4, "y"),
+                Arguments.of("Extend Identifier", "LET x = 5;", 5, 5, "yz"),
+                Arguments.of("Join Identifiers", "one two", 3, 4, ""),
+                Arguments.of("Split Identifier", "onetwo", 3, 3, " "),
+                Arguments.of("Complete Decimal", "x = 1.", 6, 6, "5"),
+                Arguments.of("Complete Operator", "x = y", 3, 3, "="),
+                Arguments.of("Insert String", "print(x); print(y);", 6, 6, "\"a b\", "),
+                Arguments.of("Split String", "x = \"a\" + b;", 6, 6, "\" + \""),
+                Arguments.of("Delete Everything", "LET x = 5;", 0, 10, ""),
+                Arguments.of("Append", "LET x = 5", 9, 9, ";")
+        );
+    }
+
+    @Test
+    void testReuse() {
+        String source = "LET x = 5;\nLET y = 6;\nLET z = 7;";
+        IncrementalLexer lexer = new IncrementalLexer(source);
+        List<Token> before = lexer.getTokens();
+        List<Token> after = lexer.edit(15, 16, "w");
+        Assertions.assertSame(before.get(0), after.get(0));
+        Assertions.assertSame(before.get(before.size() - 1), after.get(after.size() - 1));
+        Assertions.assertEquals(new Token(Token.Type.IDENTIFIER, "w", 15), after.get(6));
+    }
+
+    @Test
+    void testShiftedReuse() {
+        String source = "LET x = 5;\nLET y = 6;\nLET z = 7;";
+        IncrementalLexer lexer = new IncrementalLexer(source);
+        List<Token> before = new ArrayList<>(lexer.getTokens());
+        Assertions.assertEquals(new Token(Token.Type.INTEGER, "7", 32), lexer.edit(4, 4, "ab").get(before.size() - 2));
+        List<Token> after = lexer.edit(4, 6, "");
+        Assertions.assertEquals(before, after);
+        // Tokens after the first statement were never re-lexed or moved.
+        for (int i = 5; i < before.size(); i++) {
+            Assertions.assertSame(before.get(i), after.get(i), "Token " + i);
+        }
+    }
+
+    @Test
+    void testEdits() {
+        String[] insertions = {"", " ", "x", "1", "\n", "+", "=", ".", "5.", "'a'", "\"", "\"s\"", "\\", "LET "};
+        Random random = new Random(0);
+        String source = LexerBenchmark.generate(2048);
+        IncrementalLexer lexer = new IncrementalLexer(source);
+        int position = 0;
+        for (int i = 0; i < 2000; i++) {
+            // Edits mostly follow each other like typing, with some jumps.
+            position = random.nextInt(8) == 0 ? random.nextInt(source.length() + 1)
+                    : Math.max(0, Math.min(source.length(), position + random.nextInt(9) - 3));
+            int end = Math.min(source.length(), position + random.nextInt(3));
+            String replacement = insertions[random.nextInt(insertions.length)];
+            String updated = source.substring(0, position) + replacement + source.substring(end);
+            List<Token> expected;
+            try {
+                expected = new Lexer(updated).lex();
+            } catch (ParseException e) {
+                int start = position;
+                Assertions.assertThrows(ParseException.class, () -> lexer.edit(start, end, replacement), "Edit " + i);
+                Assertions.assertEquals(source, lexer.getSource(), "Edit " + i);
+                continue;
+            }
+            Assertions.assertEquals(expected, lexer.edit(position, end, replacement), "Edit " + i);
+            source = updated;
+        }
+        Assertions.assertEquals(source, lexer.getSource());
+    }
+
+    @Test
+    void testInvalidEdit() {
+        IncrementalLexer lexer = new IncrementalLexer("x = 1;");
+        Assertions.assertThrows(ParseException.class, () -> lexer.edit(4, 5, "01"));
+        Assertions.assertEquals("x = 1;", lexer.getSource());
+    }
+
+}
@@ -0,0 +1,106 @@
+package plc.project;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Compares the throughput of the table-driven {@link Lexer#lex()} against the
+ * pattern-based {@link Lexer#lexPatterns()} on generated multi-megabyte
+ * sources, and shows how {@link Lexer#lexParallel(ForkJoinPool)} scales from
+ * one core to all available cores. When the Vector API is available, {@link
+ * Lexer.Option#VECTORIZE} is also compared on the input, sequentially and in
+ * parallel, and on a heavily indented copy of it; each measurement creates
+ * a new lexer, so it includes copying the input into the array the vectors are
+ * loaded from. {@link Lexer#lexBuffer()} is compared against a hit
+ * in a {@link TokenCache}, which includes hashing the source. Run with {@code ./gradlew lexerBenchmark}; the optional
+ * argument is the input size in megabytes.
+ */
+public final class LexerBenchmark {
+
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        String input = generate(megabytes * 1024 * 1024);
+        System.out.printf("input: %,d characters%n", input.length());
+        measure("patterns", input, Lexer::lexPatterns);
+        measure("table", input, Lexer::lex);
+        measure("buffer", input, lexer -> lexer.lexBuffer().asList());
+        Path directory = Files.createTempDirectory("tokens");
+        try {
+            TokenCache cache = new TokenCache(directory);
+            measure("cache-hit", input, lexer -> cache.lex(input).asList());
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+        for (int cores = 1; cores <= Runtime.getRuntime().availableProcessors(); cores *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(cores);
+            measure("parallel-" + cores, input, lexer -> lexer.lexParallel(pool));
+            pool.shutdown();
+        }
+        if (Lexer.isVectorized()) {
+            measure("vectorized", input, Lexer::lex, Lexer.Option.VECTORIZE);
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            measure("parallel-vec", input, lexer -> lexer.lexParallel(pool), Lexer.Option.VECTORIZE);
+            String indented = indent(input);
+            measure("indented", indented, Lexer::lex);
+            measure("indented-vec", indented, Lexer::lex, Lexer.Option.VECTORIZE);
+        }
+    }
+
+    private static void measure(String name, String input, Function<Lexer, List<Token>> lex, Lexer.Option... options) {
+        int tokens = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            tokens = lex.apply(new Lexer(input, options)).size();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            tokens = lex.apply(new Lexer(input, options)).size();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9 / ITERATIONS;
+        System.out.printf("%-12s %,d tokens in %.3f s (%.1f MB/s)%n",
+                name, tokens, seconds, input.length() / seconds / (1024 * 1024));
+    }
+
+    /**
+     * Returns the source with every line indented by a further 24 spaces, like
+     * deeply nested generated code.
+     */
+    static String indent(String source) {
+        return source.replace("\n", "\n" + " ".repeat(24));
+    }
+
+    /**
+     * Generates a program of at least the given number of characters made of
+     * globals followed by functions, exercising every token type.
+     */
+    static String generate(int length) {
+        StringBuilder globals = new StringBuilder();
+        StringBuilder functions = new StringBuilder(length + 256);
+        int i = 0;
+        while (globals.length() + functions.length() < length) {
+            globals.append("VAR global").append(i).append(": Integer = ").append(i).append(";\n");
+            functions.append("FUN function").append(i).append("(x: Integer, y: Decimal): String DO\n")
+                    .append("    LET name = \"value\\t").append(i).append("\";\n")
+                    .append("    IF x > -").append(i % 100 + 1).append(" && y != 0.5 DO\n")
+                    .append("        print(name, 'c', '\\n', x * 2 + y / 3.25);\n")
+                    .append("    END\n")
+                    .append("    RETURN name;\n")
+                    .append("END\n");
+            i++;
+        }
+        return globals.append(functions).toString();
+    }
+
+}
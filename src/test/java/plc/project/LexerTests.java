@@ -6,8 +6,23 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class LexerTests {
@@ -351,6 +366,412 @@ public class LexerTests {
         Assertions.assertEquals(9, exception.getIndex());
     }
 
+    @ParameterizedTest
+    @MethodSource
+    void testTableEquivalence(String test, String input) {
+        Assertions.assertEquals(lexResult(() -> new Lexer(input).lexPatterns()), lexResult(() -> new Lexer(input).lex()));
+    }
+
+    private static Stream<Arguments> testTableEquivalence() {
+        return Stream.of(
+                Arguments.of("Whitespace", " \t\n\u000B\f\r\b"),
+                Arguments.of("Negative Zero", "-0"),
+                Arguments.of("Negative Zero Spaced", "-0 "),
+                Arguments.of("Trailing Decimal", "1."),
+                Arguments.of("Trailing Decimal Spaced", "1. "),
+                Arguments.of("Leading Zero", "01"),
+                Arguments.of("Operators", "!====<=>=&&||&|-+;"),
+                Arguments.of("Non-ASCII", "\u00e9\u4e2d"),
+                Arguments.of("Character Escapes", "'\\b' '\\'' '\\\\'"),
+                Arguments.of("Invalid Character Escape", "'\\\"'"),
+                Arguments.of("Raw Tab Character", "'\t'"),
+                Arguments.of("Unterminated Character", "'a"),
+                Arguments.of("String Escapes", "\"\\\"\\'\\n\""),
+                Arguments.of("Unterminated String", "\"abc\rdef\""),
+                Arguments.of("Program", "FUN main(): Integer DO\n    LET x = -1.5;\n    print(\"x\", 'y', @z-1);\n    RETURN 0;\nEND")
+        );
+    }
+
+    @Test
+    void testInterning() {
+        SymbolTable symbols = new SymbolTable();
+        List<Token> first = new Lexer("LET name = name;", symbols).lex();
+        List<Token> second = new Lexer("FUN name() DO END", symbols).lex();
+        Assertions.assertSame(first.get(1).getLiteral(), first.get(3).getLiteral());
+        Assertions.assertSame(first.get(1).getLiteral(), second.get(1).getLiteral());
+        Assertions.assertSame("LET", first.get(0).getLiteral());
+        Assertions.assertEquals(Token.Kind.LET, first.get(0).getKind());
+        Assertions.assertEquals(Token.Kind.IDENTIFIER, first.get(1).getKind());
+        Assertions.assertEquals(Token.Kind.FUN, second.get(0).getKind());
+        Assertions.assertEquals(Token.Kind.END, second.get(second.size() - 1).getKind());
+        Assertions.assertEquals(Token.Kind.DO, new Token(Token.Type.IDENTIFIER, "DO", 0).getKind());
+        Assertions.assertEquals(Token.Kind.STRING, new Token(Token.Type.STRING, "\"DO\"", 0).getKind());
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testDecodedValue(String test, String input, Object expected) {
+        List<Token> tokens = new Lexer(input, Lexer.Option.DECODE_LITERALS).lex();
+        Assertions.assertEquals(new Lexer(input).lex(), tokens);
+        Assertions.assertEquals(1, tokens.size());
+        Assertions.assertEquals(expected, tokens.get(0).getValue());
+    }
+
+    private static Stream<Arguments> testDecodedValue() {
+        return Stream.of(
+                Arguments.of("Integer", "123", new BigInteger("123")),
+                Arguments.of("Negative Integer", "-45", new BigInteger("-45")),
+                Arguments.of("Large Integer", "123456789012345678901234567890", new BigInteger("123456789012345678901234567890")),
+                Arguments.of("Decimal", "1.50", new BigDecimal("1.50")),
+                Arguments.of("Negative Decimal", "-0.05", new BigDecimal("-0.05")),
+                Arguments.of("Large Decimal", "12345678901234567890.5", new BigDecimal("12345678901234567890.5")),
+                Arguments.of("Character", "'c'", 'c'),
+                Arguments.of("Character Escape", "'\\n'", '\n'),
+                Arguments.of("String", "\"string\"", "string"),
+                Arguments.of("String Escapes", "\"a\\tb\\\"c\\\\n\"", "a\tb\"c\\n")
+        );
+    }
+
+    @Test
+    void testLongValue() {
+        List<Token> tokens = new Lexer("LET x = -9223372036854775807;", Lexer.Option.DECODE_LITERALS).lex();
+        Assertions.assertFalse(tokens.get(1).hasValue());
+        Assertions.assertTrue(tokens.get(3).hasValue());
+        Assertions.assertFalse(tokens.get(3).hasLongValue());
+        tokens = new Lexer("LET x = -922337203685477580;", Lexer.Option.DECODE_LITERALS).lex();
+        Assertions.assertEquals(-922337203685477580L, tokens.get(3).getLongValue());
+        Assertions.assertFalse(new Lexer("0").lex().get(0).hasValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testRecover(String test, String input, List<Token> expected, List<Integer> errors) {
+        Lexer lexer = new Lexer(input, Lexer.Option.RECOVER);
+        Assertions.assertEquals(expected, lexer.lex());
+        Assertions.assertEquals(errors, lexer.getErrors().stream().map(ParseException::getIndex).collect(Collectors.toList()));
+    }
+
+    private static Stream<Arguments> testRecover() {
+        return Stream.of(
+                Arguments.of("No Errors", "x = 1;", Arrays.asList(
+                        new Token(Token.Type.IDENTIFIER, "x", 0),
+                        new Token(Token.Type.OPERATOR, "=", 2),
+                        new Token(Token.Type.INTEGER, "1", 4),
+                        new Token(Token.Type.OPERATOR, ";", 5)
+                ), Arrays.asList()),
+                Arguments.of("Leading Zero", "x = 012; y", Arrays.asList(
+                        new Token(Token.Type.IDENTIFIER, "x", 0),
+                        new Token(Token.Type.OPERATOR, "=", 2),
+                        new Token(Token.Type.OPERATOR, ";", 7),
+                        new Token(Token.Type.IDENTIFIER, "y", 9)
+                ), Arrays.asList(5)),
+                Arguments.of("Invalid Escape", "\"a\\qb\" c", Arrays.asList(
+                        new Token(Token.Type.IDENTIFIER, "c", 7)
+                ), Arrays.asList(3)),
+                Arguments.of("Unterminated String", "\"abc\nx", Arrays.asList(
+                        new Token(Token.Type.IDENTIFIER, "x", 5)
+                ), Arrays.asList(4)),
+                Arguments.of("Multiple Errors", "'' 'ab' \"\\q\" 01 ok", Arrays.asList(
+                        new Token(Token.Type.IDENTIFIER, "ok", 16)
+                ), Arrays.asList(1, 5, 10, 14))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testSnapshot(String test, String input, int limit) {
+        List<Token> expected = new Lexer(input).lex();
+        Lexer lexer = new Lexer(input);
+        List<Token> tokens = new ArrayList<>(lexer.lex(limit));
+        Lexer.Snapshot snapshot = lexer.snapshot();
+        Assertions.assertTrue(tokens.stream().allMatch(token -> token.getIndex() < limit));
+        tokens.addAll(lexer.lex());
+        Assertions.assertEquals(expected, tokens);
+        lexer.restore(snapshot);
+        Assertions.assertEquals(expected.stream().filter(token -> token.getIndex() >= snapshot.getIndex()).collect(Collectors.toList()), lexer.lex());
+    }
+
+    private static Stream<Arguments> testSnapshot() {
+        return Stream.of(
+                Arguments.of("Start", "LET x = 1;", 0),
+                Arguments.of("Between Tokens", "LET x = 1;", 5),
+                Arguments.of("Within Token", "LET name = 1;", 5),
+                Arguments.of("Within Whitespace", "x   =   1", 3),
+                Arguments.of("End", "LET x = 1;", 10)
+        );
+    }
+
+    @Test
+    void testRestoreErrors() {
+        Lexer lexer = new Lexer("x 01 y 02 z", Lexer.Option.RECOVER);
+        lexer.lex(4);
+        Lexer.Snapshot snapshot = lexer.snapshot();
+        Assertions.assertEquals(List.of(new Token(Token.Type.IDENTIFIER, "y", 5), new Token(Token.Type.IDENTIFIER, "z", 10)), lexer.lex());
+        Assertions.assertEquals(2, lexer.getErrors().size());
+        lexer.restore(snapshot);
+        Assertions.assertEquals(List.of(3), lexer.getErrors().stream().map(ParseException::getIndex).collect(Collectors.toList()));
+        Assertions.assertEquals(2, lexer.lex().size());
+        Assertions.assertEquals(List.of(3, 8), lexer.getErrors().stream().map(ParseException::getIndex).collect(Collectors.toList()));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testLineIndex(String test, String input, int index, int line, int column) {
+        Lexer lexer = new Lexer(input);
+        Assertions.assertEquals(line, new LineIndex(input).getLine(index));
+        Assertions.assertEquals(column, new LineIndex(input).getColumn(index));
+        lexResult(lexer::lex);
+        Assertions.assertEquals(line, lexer.getLines().getLine(index));
+        Assertions.assertEquals(column, lexer.getLines().getColumn(index));
+        Assertions.assertEquals(index - column + 1, lexer.getLines().getLineStart(line));
+    }
+
+    private static Stream<Arguments> testLineIndex() {
+        return Stream.of(
+                Arguments.of("Start", "x = 1;", 0, 1, 1),
+                Arguments.of("End", "x = 1;", 6, 1, 7),
+                Arguments.of("Second Line", "x = 1;\ny = 2;", 9, 2, 3),
+                Arguments.of("Newline", "x = 1;\ny = 2;", 6, 1, 7),
+                Arguments.of("Blank Lines", "x\n\n\n  y", 6, 4, 3),
+                Arguments.of("Carriage Return", "x\r\ny", 3, 2, 1),
+                Arguments.of("After Error", "x\n\"abc\ny\nz", 9, 4, 1)
+        );
+    }
+
+    @Test
+    void testOperatorLiterals() {
+        List<Token> tokens = new Lexer("f(a, b); x <= y != z; $ \u00e9").lex();
+        Assertions.assertSame(tokens.get(3).getLiteral(), new Lexer(",").lex().get(0).getLiteral());
+        Assertions.assertSame(";", tokens.get(6).getLiteral());
+        Assertions.assertSame("<=", tokens.get(8).getLiteral());
+        Assertions.assertSame("$", new Lexer("$").lexToken().getLiteral());
+        Assertions.assertEquals(Token.Kind.LEFT_PAREN, tokens.get(1).getKind());
+        Assertions.assertEquals(Token.Kind.LESS_EQUAL, tokens.get(8).getKind());
+        Assertions.assertEquals(Token.Kind.NOT_EQUAL, tokens.get(10).getKind());
+        Assertions.assertEquals(Token.Kind.OPERATOR, tokens.get(13).getKind());
+        Assertions.assertEquals(Token.Kind.OPERATOR, tokens.get(14).getKind());
+        Assertions.assertEquals(Token.Kind.SEMICOLON, new Token(Token.Type.OPERATOR, ";", 0).getKind());
+    }
+
+    @Test
+    void testSourceViews() {
+        String input = LexerBenchmark.generate(4096);
+        List<Token> tokens = new Lexer(input, Lexer.Option.SOURCE_VIEWS).lex();
+        Assertions.assertEquals(new Lexer(input).lex(), tokens);
+        Assertions.assertEquals(tokens, new Lexer(input).lex());
+        Assertions.assertSame("VAR", tokens.get(0).getLiteral());
+        Assertions.assertTrue(tokens.get(1).literalEquals("global0"));
+        Assertions.assertFalse(tokens.get(1).literalEquals("global1"));
+        SourceView view = new SourceView(input, 4, 11);
+        SourceView other = new SourceView("x global0", 2, 9);
+        Assertions.assertEquals(other, view);
+        Assertions.assertEquals(other.hashCode(), view.hashCode());
+        Assertions.assertNotEquals(view, "global0");
+        Assertions.assertNotEquals(view, new SourceView(input, 4, 10));
+        Assertions.assertTrue(view.contentEquals("global0"));
+        Assertions.assertEquals("lob", view.subSequence(1, 4).toString());
+        Assertions.assertEquals(
+                new Parser(new Lexer(input).lex()).parseSource(),
+                new Parser(tokens).parseSource()
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testVectorized(String test, String input) {
+        Lexer lexer = new Lexer(input, Lexer.Option.VECTORIZE);
+        Assertions.assertEquals(lexResult(() -> new Lexer(input).lex()), lexResult(lexer::lex));
+        LineIndex lines = new LineIndex(input);
+        for (int i = 0; i <= input.length(); i += 7) {
+            Assertions.assertEquals(lines.getLine(i), lexer.getLines().getLine(i));
+        }
+    }
+
+    private static Stream<Arguments> testVectorized() {
+        return Stream.of(
+                Arguments.of("Program", LexerBenchmark.generate(16384)),
+                Arguments.of("Indented", LexerBenchmark.indent(LexerBenchmark.generate(16384))),
+                Arguments.of("Long Runs", "a".repeat(100) + " ".repeat(100) + "1".repeat(100) + "\n".repeat(100) + "b_-9".repeat(50)),
+                Arguments.of("Non-ASCII", "x\u3000y 12\u0661 ab\u0100c"),
+                Arguments.of("Error", "    ".repeat(20) + "0123")
+        );
+    }
+
+    @Test
+    void testBuffer() {
+        String input = LexerBenchmark.generate(4096);
+        TokenBuffer buffer = new Lexer(input).lexBuffer();
+        Assertions.assertEquals(new Lexer(input).lex(), buffer.asList());
+        Assertions.assertTrue(buffer.literalEquals(0, "VAR"));
+        Assertions.assertFalse(buffer.literalEquals(0, "VAL"));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testBufferOptions(String test, String input, Lexer.Option option) {
+        Lexer expected = new Lexer(input, option);
+        Lexer lexer = new Lexer(input, option);
+        Assertions.assertEquals(lexResult(expected::lex), lexResult(() -> lexer.lexBuffer().asList()));
+        Assertions.assertEquals(
+                expected.getErrors().stream().map(e -> e.getMessage() + "@" + e.getIndex()).collect(Collectors.toList()),
+                lexer.getErrors().stream().map(e -> e.getMessage() + "@" + e.getIndex()).collect(Collectors.toList())
+        );
+        for (int i = 0; i <= input.length(); i++) {
+            Assertions.assertEquals(expected.getLines().getLine(i), lexer.getLines().getLine(i));
+        }
+    }
+
+    private static Stream<Arguments> testBufferOptions() {
+        return Stream.of(
+                Arguments.of("Recover", "x = 01;\ny = 'ab';\nz", Lexer.Option.RECOVER),
+                Arguments.of("Recover At End", "x = 1;\ny = 01;", Lexer.Option.RECOVER),
+                Arguments.of("Decode", "x = \"a\\nb\" + 'c' + 1.5;", Lexer.Option.DECODE_LITERALS),
+                Arguments.of("Decode Error", "x = 01;", Lexer.Option.DECODE_LITERALS),
+                Arguments.of("Vectorize", LexerBenchmark.generate(1024), Lexer.Option.VECTORIZE)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testParallel(String test, String input) {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunk = 1; chunk <= 8; chunk++) {
+                int size = chunk;
+                Assertions.assertEquals(lexResult(() -> new Lexer(input).lex()),
+                        lexResult(() -> ParallelLexer.lex(input, 0, pool, size, EnumSet.noneOf(Lexer.Option.class), null)), "Chunk size " + size);
+                char[] array = Lexer.isVectorized() ? input.toCharArray() : null;
+                Assertions.assertEquals(lexResult(() -> new Lexer(input).lex()),
+                        lexResult(() -> ParallelLexer.lex(input, 0, pool, size, EnumSet.of(Lexer.Option.VECTORIZE), array)), "Vectorized chunk size " + size);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Stream<Arguments> testParallel() {
+        return Stream.of(
+                Arguments.of("Spaces", "a b  c   d    e"),
+                Arguments.of("String With Spaces", "x = \"a b c d e f g\" + y;"),
+                Arguments.of("Character Space", "f(' ', ' ', ' ');"),
+                Arguments.of("Error After Spaces", "a b c d 01"),
+                Arguments.of("Unterminated String", "a \"b c d e"),
+                Arguments.of("Program", LexerBenchmark.generate(256))
+        );
+    }
+
+    @Test
+    void testMetrics() {
+        String input = "LET name = \"a long string literal\";\nprint(name, 1.5, 'c');";
+        Lexer lexer = new Lexer(input);
+        LexerMetrics.Counters counters = new LexerMetrics.Counters();
+        lexer.setMetrics(counters);
+        List<Token> tokens = lexer.lex();
+        for (Token.Type type : Token.Type.values()) {
+            Assertions.assertEquals(tokens.stream().filter(token -> token.getType() == type).count(), counters.getCount(type), type.name());
+        }
+        Assertions.assertEquals(tokens.size(), counters.getTokens());
+        Assertions.assertEquals(input.length(), counters.getCharacters());
+        Assertions.assertEquals(Token.Type.STRING, counters.getLongestType());
+        Assertions.assertEquals(11, counters.getLongestIndex());
+        Assertions.assertEquals(23, counters.getLongestLength());
+    }
+
+    @Test
+    void testLexEvent() throws IOException {
+        Path path = Files.createTempFile("lexer", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("plc.project.Lex").withoutThreshold();
+            recording.start();
+            new Lexer("x = \"abc\";").lex();
+            recording.stop();
+            recording.dump(path);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(path).stream()
+                    .filter(event -> event.getEventType().getName().equals("plc.project.Lex"))
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(1, events.size());
+            Assertions.assertEquals(10, events.get(0).getInt("characters"));
+            Assertions.assertEquals(4, events.get(0).getLong("tokens"));
+            Assertions.assertEquals("STRING", events.get(0).getString("longestType"));
+            Assertions.assertEquals(5, events.get(0).getInt("longestLength"));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void testMapped() throws IOException {
+        String input = LexerBenchmark.generate(4096) + "print(\"na\u00efve \u4e2d\");";
+        Path path = Files.createTempFile("lexer", ".plc");
+        try {
+            Files.write(path, input.getBytes(StandardCharsets.UTF_8));
+            List<Token> tokens = Lexer.map(path).lex();
+            Assertions.assertEquals(new Lexer(input).lex().size(), tokens.size());
+            Token last = tokens.get(tokens.size() - 3);
+            Assertions.assertEquals("\"na\u00efve \u4e2d\"", last.getLiteral());
+            Assertions.assertEquals(input.getBytes(StandardCharsets.UTF_8).length
+                    - (last.getLiteral() + ");").getBytes(StandardCharsets.UTF_8).length, last.getIndex());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testUtf8(String test, String input) {
+        Object expected = describe(lexResult(new Lexer(input, Lexer.Option.DECODE_LITERALS)::lex));
+        if (expected instanceof String) {
+            // Errors are at the byte offset of the character, or past the
+            // whole sequence within a surrogate pair.
+            String error = (String) expected;
+            int index = Integer.parseInt(error.substring(error.lastIndexOf('@') + 1));
+            if (index > 0 && index < input.length() && Character.isLowSurrogate(input.charAt(index))) {
+                index++;
+            }
+            expected = error.substring(0, error.lastIndexOf('@') + 1) + input.substring(0, index).getBytes(StandardCharsets.UTF_8).length;
+        }
+        Assertions.assertEquals(expected, describe(lexResult(Lexer.utf8(input.getBytes(StandardCharsets.UTF_8), Lexer.Option.DECODE_LITERALS)::lex)));
+    }
+
+    private static Stream<Arguments> testUtf8() {
+        return Stream.of(
+                Arguments.of("ASCII", "LET x = \"abc\";"),
+                Arguments.of("String", "print(\"na\u00efve \u4e2d\u6587\");"),
+                Arguments.of("Escaped String", "\"\u00e9\\n\u00e8\""),
+                Arguments.of("Supplementary String", "\"\ud83d\ude00\""),
+                Arguments.of("Character", "'\u00e9' '\u4e2d'"),
+                Arguments.of("Supplementary Character", "x = '\ud83d\ude00';"),
+                Arguments.of("Operator", "x \u00d7 y"),
+                Arguments.of("Unterminated String", "\"\u00e9")
+        );
+    }
+
+    /**
+     * Describes lexed tokens without their indices, which differ between
+     * characters and bytes, as their type, literal and decoded value.
+     */
+    private static Object describe(Object result) {
+        if (result instanceof String) {
+            return result;
+        }
+        return ((List<?>) result).stream()
+                .map(Token.class::cast)
+                .map(token -> token.getType() + "=" + token.getLiteral() + ":" + (token.hasValue() ? token.getValue() : null))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the tokens produced by the given lex call, or the message and
+     * index of the {@link ParseException} it throws.
+     */
+    private static Object lexResult(Supplier<List<Token>> lex) {
+        try {
+            return lex.get();
+        } catch (ParseException e) {
+            return e.getMessage() + "@" + e.getIndex();
+        }
+    }
+
     /**
      * Tests that lexing the input through {@link Lexer#lexToken()} produces a
      * single token with the expected type and literal matching the input.
@@ -8,11 +8,17 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
@@ -1047,6 +1053,227 @@ final class ParserTests {
         ));
     }
 
+    @Test
+    void testTokenBuffer() {
+        String input = LexerBenchmark.generate(8192);
+        Assertions.assertEquals(
+                new Parser(new Lexer(input).lex()).parseSource(),
+                new Parser(new Lexer(input).lexBuffer()).parseSource()
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testPipelined(String test, String input, int capacity) {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Assertions.assertEquals(
+                    parseResult(() -> new Parser(new Lexer(input).lex()).parseSource()),
+                    parseResult(() -> Parser.parsePipelined(new Lexer(input), executor, capacity))
+            );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Stream<Arguments> testPipelined() {
+        String program = LexerBenchmark.generate(65536);
+        return Stream.of(
+                Arguments.of("Program", program, 4096),
+                Arguments.of("Small Pipe", program, 1),
+                Arguments.of("Parse Error", program.replaceFirst("DO", "FUN"), 16),
+                Arguments.of("Lex Error After Parse Error", program.replaceFirst("DO", "FUN") + " 01", 16),
+                Arguments.of("Lex Error", program.replace("0.5", "0.5 '"), 16),
+                Arguments.of("Empty", "", 16)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("testPipelined")
+    void testPipelinedSameThread(String test, String input, int capacity) {
+        Assertions.assertEquals(
+                parseResult(() -> new Parser(new Lexer(input).lex()).parseSource()),
+                Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10),
+                        () -> parseResult(() -> Parser.parsePipelined(new Lexer(input), Runnable::run, capacity)))
+        );
+    }
+
+    @Test
+    void testPipelinedLexerError() {
+        Lexer lexer = new Lexer(LexerBenchmark.generate(65536));
+        lexer.setMetrics(new LexerMetrics() {
+            @Override
+            public void token(Token.Type type, int index, int length, long nanos) {
+                if (index > 1000) {
+                    throw new StackOverflowError();
+                }
+            }
+
+            @Override
+            public void lexed(int characters, long nanos) {}
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Assertions.assertThrows(StackOverflowError.class, () -> Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> Parser.parsePipelined(lexer, executor, 16)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testParallel(String test, String input) {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Token> tokens = new Lexer(input).lex();
+            Assertions.assertEquals(
+                    parseResult(() -> new Parser(tokens).parseSource()),
+                    parseResult(() -> Parser.parseParallel(tokens, pool, 16))
+            );
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Stream<Arguments> testParallel() {
+        String program = LexerBenchmark.generate(16384);
+        return Stream.of(
+                Arguments.of("Program", program),
+                Arguments.of("Globals", "VAR x: Integer = 1;\nLIST l: Integer = [1, 2];\n" + program),
+                Arguments.of("Parse Error", program.replaceFirst("DO", "FUN")),
+                Arguments.of("Missing End", program.substring(0, program.lastIndexOf("END"))),
+                Arguments.of("Extra End", program + " END"),
+                Arguments.of("Trailing Tokens", program + " x;"),
+                Arguments.of("Global After Function", program + " VAR y: Integer = 2;"),
+                Arguments.of("Empty", "")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testIncremental(String test, String input, int start, int end, String replacement, int reused) {
+        List<Token> previousTokens = new Lexer(input).lex();
+        Ast.Source previous = new Parser(previousTokens).parseSource();
+        List<Token> tokens = new IncrementalLexer(input, previousTokens).edit(start, end, replacement);
+        Object result = parseResult(() -> Parser.parseIncremental(previous, previousTokens, tokens, start, end, replacement.length()));
+        Assertions.assertEquals(parseResult(() -> new Parser(tokens).parseSource()), result);
+        if (result instanceof Ast.Source) {
+            List<Ast> nodes = new ArrayList<>(((Ast.Source) result).getGlobals());
+            nodes.addAll(((Ast.Source) result).getFunctions());
+            List<Ast> previousNodes = new ArrayList<>(previous.getGlobals());
+            previousNodes.addAll(previous.getFunctions());
+            Assertions.assertEquals(reused, nodes.stream().filter(n -> previousNodes.stream().anyMatch(p -> p == n)).count());
+        }
+    }
+
+    private static Stream<Arguments> testIncremental() {
+        String input = "VAR x: Integer = 1;\nVAL y: Integer = 2;\n"
+                + "FUN f() DO\n    RETURN x;\nEND\n"
+                + "FUN g() DO\n    WHILE x DO\n        x = x + 1;\n    END\nEND\n"
+                + "FUN h() DO\n    RETURN y;\nEND\n";
+        int f = input.indexOf("FUN f");
+        int g = input.indexOf("FUN g");
+        int h = input.indexOf("FUN h");
+        return Stream.of(
+                Arguments.of("Function Body", input, input.indexOf("x + 1"), input.indexOf("x + 1") + 1, "y", 4),
+                Arguments.of("Global Value", input, input.indexOf("1;"), input.indexOf("1;") + 1, "10", 4),
+                Arguments.of("Insert Function", input, h, h, "FUN i() DO END\n", 4),
+                Arguments.of("Insert Global", input, f - 1, f - 1, "\nVAR z: Integer = 3;", 4),
+                Arguments.of("Remove Function", input, g, h, "", 3),
+                Arguments.of("Append Function", input, input.length(), input.length(), "FUN i() DO END", 4),
+                Arguments.of("Global After Function", input, h, h, "VAR z: Integer = 3;\n", 0),
+                Arguments.of("Parse Error", input, input.indexOf("RETURN y") + 7, input.indexOf("RETURN y") + 8, "(", 0),
+                Arguments.of("Unterminated Block", input, g, g, "FUN e() DO\n", 0),
+                Arguments.of("Whitespace", input, h - 1, h, "\n\n", 4)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testIterative(String test, String input) {
+        List<Token> tokens = new Lexer(input).lex();
+        Assertions.assertEquals(
+                parseResult(() -> new Parser(tokens).parseSource()),
+                parseResult(() -> new Parser(tokens, Parser.Option.ITERATIVE).parseSource())
+        );
+    }
+
+    private static Stream<Arguments> testIterative() {
+        return Stream.of(
+                Arguments.of("Program", LexerBenchmark.generate(8192)),
+                Arguments.of("Expressions", "FUN main() DO x = a || b && c < d + e * f ^ g - h / i == j != k > l; RETURN f(a, g(b)[c], (d) e); END"),
+                Arguments.of("Blocks", "FUN main() DO IF a DO WHILE b DO SWITCH c CASE 1: IF d DO e; ELSE f; END DEFAULT g; END END END END"),
+                Arguments.of("Group Without Filler", "FUN main() DO RETURN ((x)); END"),
+                Arguments.of("Missing Operand", "FUN main() DO RETURN x +"),
+                Arguments.of("Trailing Comma", "FUN main() DO f(x,); END"),
+                Arguments.of("Access Comma", "FUN main() DO a[x, y]; END"),
+                Arguments.of("Empty Access", "FUN main() DO a[]; END"),
+                Arguments.of("Missing Default", "FUN main() DO SWITCH x CASE 1: y; END END"),
+                Arguments.of("Duplicate Default", "FUN main() DO SWITCH x DEFAULT y; DEFAULT z; END END"),
+                Arguments.of("Missing End", "FUN main() DO IF x DO WHILE y DO z;")
+        );
+    }
+
+    @Test
+    void testIterativeNesting() {
+        int depth = 1_000_000;
+        // The extra token after each ')' is skipped, as by the recursive parser.
+        Ast.Expression expression = new Parser(new Lexer("(".repeat(depth) + "x" + ") _".repeat(depth)).lex(), Parser.Option.ITERATIVE).parseExpression();
+        for (int i = 0; i < depth; i++) {
+            expression = ((Ast.Expression.Group) expression).getExpression();
+        }
+        Assertions.assertEquals(new Ast.Expression.Access(Optional.empty(), "x"), expression);
+
+        expression = new Parser(new Lexer("x" + " + (x".repeat(depth) + ") _".repeat(depth)).lex(), Parser.Option.ITERATIVE).parseExpression();
+        for (int i = 0; i < depth; i++) {
+            expression = ((Ast.Expression.Group) ((Ast.Expression.Binary) expression).getRight()).getExpression();
+        }
+        Assertions.assertEquals(new Ast.Expression.Access(Optional.empty(), "x"), expression);
+
+        List<Ast.Statement> statements = new Parser(new Lexer("IF x DO ".repeat(depth) + "y;" + " END".repeat(depth + 1)).lex(), Parser.Option.ITERATIVE).parseBlock();
+        for (int i = 0; i < depth; i++) {
+            statements = ((Ast.Statement.If) statements.get(0)).getThenStatements();
+        }
+        Assertions.assertEquals(Arrays.asList(new Ast.Statement.Expression(new Ast.Expression.Access(Optional.empty(), "y"))), statements);
+    }
+
+    private static Object parseResult(Supplier<Ast.Source> parse) {
+        try {
+            return parse.get();
+        } catch (ParseException e) {
+            return e.getMessage() + "@" + e.getIndex();
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testEscapes(String test, String input, Object expected) {
+        Ast.Expression.Literal literal = new Ast.Expression.Literal(expected);
+        Assertions.assertEquals(literal, new Parser(new Lexer(input).lex()).parseExpression());
+        Assertions.assertEquals(literal, new Parser(new Lexer(input, Lexer.Option.DECODE_LITERALS).lex()).parseExpression());
+    }
+
+    private static Stream<Arguments> testEscapes() {
+        return Stream.of(
+                Arguments.of("Escaped Backslash Before N", "\"a\\\\n\"", "a\\n"),
+                Arguments.of("Escaped Backslashes", "\"\\\\\\\\\"", "\\\\"),
+                Arguments.of("Escaped Backslash Before Quote", "\"\\\\'\"", "\\'"),
+                Arguments.of("Escapes", "\"\\n\\t\\'\\\"\"", "\n\t'\""),
+                Arguments.of("Character Backslash", "'\\\\'", '\\'),
+                Arguments.of("Character Quote", "'\\''", '\'')
+        );
+    }
+
+    @Test
+    void testDecodedLiterals() {
+        String input = "VAL s: String = \"a\\tb\";\nVAL c: Character = '\\n';\n" + LexerBenchmark.generate(8192);
+        Assertions.assertEquals(
+                new Parser(new Lexer(input).lex()).parseSource(),
+                new Parser(new Lexer(input, Lexer.Option.DECODE_LITERALS).lex()).parseSource()
+        );
+    }
+
     /**
      * Standard test function. If expected is null, a ParseException is expected
      * to be thrown (not used in the provided tests).
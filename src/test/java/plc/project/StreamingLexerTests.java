@@ -0,0 +1,168 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class StreamingLexerTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testStreaming(String test, String input) {
+        for (int capacity = 1; capacity <= 4; capacity++) {
+            Assertions.assertEquals(lexResult(input, -1), lexResult(input, capacity), "Capacity " + capacity);
+        }
+    }
+
+    private static Stream<Arguments> testStreaming() {
+        return Stream.of(
+                Arguments.of("Empty", ""),
+                Arguments.of("Whitespace", "   \n\t "),
+                Arguments.of("Negative Zero", "-0"),
+                Arguments.of("Negative Zero Spaced", "-0 "),
+                Arguments.of("Trailing Decimal", "1."),
+                Arguments.of("Long Identifier", "a-very-long-identifier_name1 b"),
+                Arguments.of("Operators", "!====<=>=&&||"),
+                Arguments.of("String", "print(\"Hello, \\\"World\\\"!\");"),
+                Arguments.of("Unterminated String", "\"abc"),
+                Arguments.of("Invalid Escape", "x = '\\e';"),
+                Arguments.of("Program", LexerBenchmark.generate(1024))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("testStreaming")
+    void testPublisher(String test, String input) {
+        for (int chunk = 1; chunk <= 4; chunk++) {
+            Assertions.assertEquals(lexResult(input, -1), publishResult(input, chunk), "Chunk " + chunk);
+        }
+    }
+
+    @Test
+    void testPublisherBackpressure() {
+        List<Token> tokens = new ArrayList<>();
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+        Flow.Processor<CharBuffer, Token> publisher = Lexer.publisher();
+        publisher.subscribe(new Flow.Subscriber<Token>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription[0] = s;
+            }
+
+            @Override
+            public void onNext(Token token) {
+                tokens.add(token);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {}
+
+            @Override
+            public void onComplete() {}
+        });
+        int[] requested = new int[1];
+        publisher.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requested[0] += n;
+            }
+
+            @Override
+            public void cancel() {}
+        });
+        publisher.onNext(CharBuffer.wrap("LET x = 1; "));
+        Assertions.assertEquals(List.of(), tokens);
+        subscription[0].request(2);
+        Assertions.assertEquals(new Lexer("LET x").lex(), tokens);
+        Assertions.assertEquals(1, requested[0], "No input is requested while the tokens are not.");
+    }
+
+    @Test
+    void testChannel() {
+        String input = "LET name = \"caf\u00e9\";";
+        StreamingLexer lexer = new StreamingLexer(Channels.newChannel(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))), StandardCharsets.UTF_8);
+        Assertions.assertEquals(new Lexer(input).lex(), lexer.stream().collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns the tokens published by {@link Lexer#publisher} when the input is
+     * published in chunks of the given size from another thread and tokens are
+     * requested one at a time, or the message and index of the {@link
+     * ParseException} signalled.
+     */
+    private static Object publishResult(String input, int chunk) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        List<Token> tokens = new ArrayList<>();
+        Flow.Processor<CharBuffer, Token> publisher = Lexer.publisher();
+        publisher.subscribe(new Flow.Subscriber<Token>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Token token) {
+                tokens.add(token);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.complete(throwable instanceof ParseException
+                        ? throwable.getMessage() + "@" + ((ParseException) throwable).getIndex()
+                        : throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(tokens);
+            }
+        });
+        try (SubmissionPublisher<CharBuffer> chunks = new SubmissionPublisher<>(ForkJoinPool.commonPool(), 2)) {
+            chunks.subscribe(publisher);
+            for (int i = 0; i < input.length(); i += chunk) {
+                chunks.submit(CharBuffer.wrap(input, i, Math.min(input.length(), i + chunk)));
+            }
+        }
+        return result.orTimeout(10, TimeUnit.SECONDS).join();
+    }
+
+    /**
+     * Returns the tokens lexed from the input, or the message and index of the
+     * {@link ParseException} thrown. A negative capacity uses {@link Lexer#lex()}.
+     */
+    private static Object lexResult(String input, int capacity) {
+        try {
+            if (capacity < 0) {
+                return new Lexer(input).lex();
+            }
+            List<Token> tokens = new ArrayList<>();
+            new StreamingLexer(new StringReader(input), capacity).forEachRemaining(tokens::add);
+            return tokens;
+        } catch (ParseException e) {
+            return e.getMessage() + "@" + e.getIndex();
+        }
+    }
+
+}
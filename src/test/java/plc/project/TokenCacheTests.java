@@ -0,0 +1,195 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+public class TokenCacheTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testCache(String test, String source) throws IOException {
+        Path directory = Files.createTempDirectory("tokens");
+        try {
+            TokenCache cache = new TokenCache(directory);
+            Path entry = directory.resolve(TokenCache.key(source) + ".tokens");
+            Assertions.assertEquals(new Lexer(source).lex(), cache.lex(source).asList(), "Miss");
+            Assertions.assertTrue(Files.exists(entry));
+            Assertions.assertEquals(new Lexer(source).lex(), cache.lex(source).asList(), "Hit");
+            Assertions.assertEquals(new Lexer(source).lex(), new TokenCache(directory).lex(source).asList(), "Shared");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static Stream<Arguments> testCache() {
+        return Stream.of(
+                Arguments.of("Empty", ""),
+                Arguments.of("Whitespace", "  \n\t"),
+                Arguments.of("Statement", "LET x = 5;"),
+                Arguments.of("Non-ASCII", "print(\"na\u00efve\") \u00d7 y"),
+                Arguments.of("Long Token", "x = \"" + "a".repeat(1000) + "\";"),
+                Arguments.of("Program", LexerBenchmark.generate(4096))
+        );
+    }
+
+    @Test
+    void testChangedSource() throws IOException {
+        Path directory = Files.createTempDirectory("tokens");
+        try {
+            TokenCache cache = new TokenCache(directory);
+            cache.lex("LET x = 5;");
+            Assertions.assertEquals(new Lexer("LET x = 50;").lex(), cache.lex("LET x = 50;").asList());
+            try (Stream<Path> entries = Files.list(directory)) {
+                Assertions.assertEquals(2, entries.count());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testCorruptEntry(String test, UnaryOperator<byte[]> corrupt) throws IOException {
+        Path directory = Files.createTempDirectory("tokens");
+        try {
+            String source = "LET x = 5;";
+            Path entry = directory.resolve(TokenCache.key(source) + ".tokens");
+            new TokenCache(directory).lex(source);
+            byte[] valid = Files.readAllBytes(entry);
+            Files.write(entry, corrupt.apply(valid.clone()));
+            Assertions.assertEquals(new Lexer(source).lex(), new TokenCache(directory).lex(source).asList());
+            Assertions.assertArrayEquals(valid, Files.readAllBytes(entry), "The entry is written again.");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static Stream<Arguments> testCorruptEntry() {
+        // The entry of "LET x = 5;" has a 16 byte header, 5 starts at 16, 5
+        // lengths at 36, and 5 types at 56.
+        return Stream.of(
+                Arguments.of("Empty", (UnaryOperator<byte[]>) bytes -> new byte[0]),
+                Arguments.of("Truncated Header", (UnaryOperator<byte[]>) bytes -> Arrays.copyOf(bytes, 10)),
+                Arguments.of("Truncated Tokens", (UnaryOperator<byte[]>) bytes -> Arrays.copyOf(bytes, bytes.length - 1)),
+                Arguments.of("Trailing Byte", (UnaryOperator<byte[]>) bytes -> Arrays.copyOf(bytes, bytes.length + 1)),
+                Arguments.of("Magic", (UnaryOperator<byte[]>) bytes -> set(bytes, 0, 0)),
+                Arguments.of("Version", (UnaryOperator<byte[]>) bytes -> set(bytes, 4, 1)),
+                Arguments.of("Source Length", (UnaryOperator<byte[]>) bytes -> set(bytes, 8, 11)),
+                Arguments.of("Token Count", (UnaryOperator<byte[]>) bytes -> set(bytes, 12, -1)),
+                Arguments.of("Overlapping Tokens", (UnaryOperator<byte[]>) bytes -> set(bytes, 20, 0)),
+                Arguments.of("Token Past End", (UnaryOperator<byte[]>) bytes -> set(bytes, 52, 100)),
+                Arguments.of("Negative Length", (UnaryOperator<byte[]>) bytes -> set(bytes, 36, -1)),
+                Arguments.of("Type", (UnaryOperator<byte[]>) bytes -> {
+                    bytes[56] = 100;
+                    return bytes;
+                })
+        );
+    }
+
+    /**
+     * Sets the little-endian int at the given offset.
+     */
+    private static byte[] set(byte[] bytes, int offset, int value) {
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, value);
+        return bytes;
+    }
+
+    @Test
+    void testUnreadableEntry() throws IOException {
+        Path directory = Files.createTempDirectory("tokens");
+        try {
+            String source = "LET x = 5;";
+            // A non-empty directory can neither be read nor replaced.
+            Path entry = Files.createDirectory(directory.resolve(TokenCache.key(source) + ".tokens"));
+            Files.createFile(entry.resolve("file"));
+            Assertions.assertEquals(new Lexer(source).lex(), new TokenCache(directory).lex(source).asList());
+            Assertions.assertTrue(Files.isDirectory(entry));
+            try (Stream<Path> entries = Files.list(directory)) {
+                Assertions.assertEquals(1, entries.count(), "No temporary files are left behind.");
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void testPermissions() throws IOException {
+        Path directory = Files.createTempDirectory("tokens");
+        try {
+            String source = "LET x = 5;";
+            new TokenCache(directory).lex(source);
+            Path entry = directory.resolve(TokenCache.key(source) + ".tokens");
+            if (entry.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Assertions.assertEquals(PosixFilePermissions.fromString("rw-r--r--"), Files.getPosixFilePermissions(entry));
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void testInvalidSource() throws IOException {
+        Path directory = Files.createTempDirectory("tokens");
+        try {
+            Assertions.assertThrows(ParseException.class, () -> new TokenCache(directory).lex("x = 01;"));
+            try (Stream<Path> entries = Files.list(directory)) {
+                Assertions.assertEquals(0, entries.count());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void testConcurrent() throws Exception {
+        Path directory = Files.createTempDirectory("tokens");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            String source = LexerBenchmark.generate(1024);
+            List<Callable<List<Token>>> tasks = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                // Separate caches behave like separate JVMs sharing the directory.
+                tasks.add(() -> new TokenCache(directory).lex(source).asList());
+            }
+            List<Token> expected = new Lexer(source).lex();
+            for (Future<List<Token>> result : executor.invokeAll(tasks)) {
+                Assertions.assertEquals(expected, result.get());
+            }
+            try (Stream<Path> entries = Files.list(directory)) {
+                Assertions.assertEquals(1, entries.count(), "No temporary files are left behind.");
+            }
+        } finally {
+            executor.shutdown();
+            delete(directory);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+}